@@ -0,0 +1,96 @@
+package com.xiaofeng.layoutmanagers;
+
+import java.util.Arrays;
+
+/**
+ * Lines of attached children, rebuilt by {@link FlowLayoutManager} after every layout and scroll, so
+ * queries about them do not need to walk children again.
+ */
+class AttachedLines {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int[] firstChildIndices = new int[INITIAL_CAPACITY];
+	private int[] lastChildIndices = new int[INITIAL_CAPACITY];
+	private int[] firstPositions = new int[INITIAL_CAPACITY];
+	private int[] lastPositions = new int[INITIAL_CAPACITY];
+	private int[] tops = new int[INITIAL_CAPACITY];
+	private int[] bottoms = new int[INITIAL_CAPACITY];
+	private int lineCount = 0;
+
+	void clear() {
+		lineCount = 0;
+	}
+
+	void startLine(int childIndex, int adapterPosition, int top) {
+		if (lineCount == firstChildIndices.length) {
+			int newCapacity = lineCount * 2;
+			firstChildIndices = Arrays.copyOf(firstChildIndices, newCapacity);
+			lastChildIndices = Arrays.copyOf(lastChildIndices, newCapacity);
+			firstPositions = Arrays.copyOf(firstPositions, newCapacity);
+			lastPositions = Arrays.copyOf(lastPositions, newCapacity);
+			tops = Arrays.copyOf(tops, newCapacity);
+			bottoms = Arrays.copyOf(bottoms, newCapacity);
+		}
+		firstChildIndices[lineCount] = childIndex;
+		firstPositions[lineCount] = adapterPosition;
+		tops[lineCount] = top;
+		bottoms[lineCount] = top;
+		lineCount ++;
+	}
+
+	/**
+	 * Add child to last line.
+	 */
+	void addChild(int childIndex, int adapterPosition, int bottom) {
+		int line = lineCount - 1;
+		lastChildIndices[line] = childIndex;
+		lastPositions[line] = adapterPosition;
+		bottoms[line] = Math.max(bottoms[line], bottom);
+	}
+
+	int getLineCount() {
+		return lineCount;
+	}
+
+	int getFirstChildIndex(int line) {
+		return firstChildIndices[line];
+	}
+
+	int getLastChildIndex(int line) {
+		return lastChildIndices[line];
+	}
+
+	int getFirstPosition(int line) {
+		return firstPositions[line];
+	}
+
+	int getLastPosition(int line) {
+		return lastPositions[line];
+	}
+
+	int getTop(int line) {
+		return tops[line];
+	}
+
+	int getBottom(int line) {
+		return bottoms[line];
+	}
+
+	/**
+	 * @return last line whose top is not below y, or -1 if y is above all lines.
+	 */
+	int findLineAt(int y) {
+		if (lineCount == 0 || y < tops[0]) {
+			return -1;
+		}
+		int index = Arrays.binarySearch(tops, 0, lineCount, y);
+		if (index < 0) {
+			return -index - 2;
+		}
+		// lines with no height share the same top, take the last one.
+		while (index + 1 < lineCount && tops[index + 1] == y) {
+			index ++;
+		}
+		return index;
+	}
+}
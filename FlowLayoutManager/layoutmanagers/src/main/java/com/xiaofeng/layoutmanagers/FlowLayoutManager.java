@@ -3,10 +3,15 @@ package com.xiaofeng.layoutmanagers;
 import android.graphics.Point;
 import android.graphics.PointF;
 import android.graphics.Rect;
+import android.os.Build;
 import android.support.v7.widget.LinearSmoothScroller;
 import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.Choreographer;
 import android.view.View;
 
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -49,12 +54,103 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
 			return layoutContext;
 		}
 	}
+
+	public interface MeasureMismatchListener {
+		/**
+		 * Called when item measurer result is different from measured view, in measurer verification mode.
+		 */
+		void onMeasureMismatch(int adapterPosition, int estimatedWidth, int estimatedHeight, int actualWidth, int actualHeight);
+	}
+
+	public interface OnVisibleRangeChangedListener {
+		/**
+		 * Called after layout or scroll, when first or last visible item changed.
+		 */
+		void onVisibleRangeChanged(int firstVisiblePosition, int lastVisiblePosition);
+	}
+
 	private static final String LOG_TAG = "FlowLayoutManager";
+	private static final int NO_LINE_OFFSET = Integer.MIN_VALUE;
+	private static final int WARM_UP_MAX_ITEMS_PER_FRAME = 8;
+	// leave some time in frame for whatever else is posted after warm up.
+	private static final long WARM_UP_FRAME_MARGIN_NANOS = 2000000;
+	private static final long WARM_UP_INITIAL_ITEM_COST_NANOS = 500000;
+	// stop after this many frames in a row without progress, until next layout or scroll idle.
+	private static final int WARM_UP_MAX_IDLE_FRAMES = 30;
+	private static final int DEFAULT_PLACEHOLDER_COLOR = 0x1F000000;
 	RecyclerView recyclerView;
 	int firstChildAdapterPosition = 0;
 	RecyclerView.Recycler recyclerRef;
 	FlowLayoutOptions flowLayoutOptions;
 	FlowLayoutOptions newFlowLayoutOptions;
+	ItemMeasurer itemMeasurer;
+	boolean measurerVerificationEnabled = false;
+	MeasureMismatchListener measureMismatchListener;
+	int measureMismatchCount = 0;
+	final ItemSizeCache itemSizeCache = new ItemSizeCache();
+	final LineTable lineTable = new LineTable(0, FlowLayoutOptions.ITEM_PER_LINE_NO_LIMIT);
+	boolean inPreLayout = false;
+	int layoutContentWidth = -1;
+	LayoutTraceRecorder traceRecorder;
+	boolean stackFromEnd = false;
+	// last item is at bottom edge, or no item at all. stack from end layout keeps it that way.
+	boolean anchoredToEnd = true;
+	boolean scrollPositionPending = false;
+	final AttachedLines attachedLines = new AttachedLines();
+	int firstVisiblePosition = RecyclerView.NO_POSITION;
+	int lastVisiblePosition = RecyclerView.NO_POSITION;
+	int firstCompletelyVisiblePosition = RecyclerView.NO_POSITION;
+	int lastCompletelyVisiblePosition = RecyclerView.NO_POSITION;
+	int firstVisibleLine = 0;
+	int visibleLineCount = 0;
+	OnVisibleRangeChangedListener onVisibleRangeChangedListener;
+	boolean layoutSnapshotEnabled = false;
+	volatile LayoutSnapshot layoutSnapshot;
+	long layoutSnapshotVersion = 0;
+	int scrollState = RecyclerView.SCROLL_STATE_IDLE;
+	boolean sizeWarmUpEnabled = false;
+	boolean warmUpScheduled = false;
+	long warmUpFrameTimeNanos;
+	long warmUpItemCostNanos = WARM_UP_INITIAL_ITEM_COST_NANOS;
+	int warmedItemCount = 0;
+	int warmUpIdleFrames = 0;
+	int flingPlaceholderThreshold = 0;
+	// fast fling moves lines of line table instead of attached views, nothing is bound until it slows down.
+	boolean placeholderMode = false;
+	// y of line table's first line top while showing placeholders.
+	int placeholderLineOffset;
+	int firstPlaceholderPosition = RecyclerView.NO_POSITION;
+	int lastPlaceholderPosition = RecyclerView.NO_POSITION;
+	// views removed for placeholders, rebound when real views come back instead of going through the pool.
+	final List<View> placeholderViews = new ArrayList<>();
+	int placeholderColor = DEFAULT_PLACEHOLDER_COLOR;
+	PlaceholderDecoration placeholderDecoration;
+	// lines off screen for hit tests, line table itself above attached lines, belowLineTable below them.
+	final LineTable belowLineTable = new LineTable(0, FlowLayoutOptions.ITEM_PER_LINE_NO_LIMIT);
+	LineTable hitTestLines;
+	int hitTestOffset;
+	int hitTestFirstPosition;
+	int hitTestEndPosition;
+
+	private final Choreographer.FrameCallback warmUpFrameCallback = new Choreographer.FrameCallback() {
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			warmUpFrameTimeNanos = frameTimeNanos;
+			// runs after this frame is laid out and drawn.
+			if (recyclerView != null) {
+				recyclerView.post(warmUpRunnable);
+			} else {
+				warmUpScheduled = false;
+			}
+		}
+	};
+
+	private final Runnable warmUpRunnable = new Runnable() {
+		@Override
+		public void run() {
+			warmUpSizes();
+		}
+	};
 
 	public FlowLayoutManager() {
 		flowLayoutOptions = new FlowLayoutOptions();
@@ -70,7 +166,14 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
 	public void onLayoutChildren(RecyclerView.Recycler recycler, RecyclerView.State state) {
 		recyclerRef = recycler;
 		if (state.isPreLayout()) {
+			if (placeholderMode) {
+				// nothing attached to animate.
+				return;
+			}
+			// sizes and positions in pre layout are not final, keep them out of size cache.
+			inPreLayout = true;
 			onPreLayoutChildren(recycler);
+			inPreLayout = false;
 		} else {
 			onRealLayoutChildren(recycler);
 		}
@@ -81,6 +184,10 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
 		int firstItemAdapterPosition = getChildAdapterPosition(0);
 		int currentItemPosition = firstItemAdapterPosition < 0 ? 0 : firstItemAdapterPosition;
 		Point point = layoutStartPoint(LayoutContext.fromLayoutOptions(flowLayoutOptions));
+		if (stackFromEnd && anchoredToEnd && getChildCount() > 0) {
+			// stacked at bottom, items are not at top edge, keep them where they are so only real moves animate.
+			point.y = getDecoratedTop(getChildAt(getMaxHeightIndexInLine(0)));
+		}
 		int x = point.x, y = point.y, height = 0;
 		boolean newline;
 		int real_x = point.x, real_y = point.y, real_height = 0;
@@ -148,7 +255,51 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
 	}
 
 	private void onRealLayoutChildren(RecyclerView.Recycler recycler) {
+		int contentWidth = rightVisibleEdge() - leftVisibleEdge();
+		validateItemSizes(contentWidth);
+		boolean fromPlaceholders = placeholderMode && !scrollPositionPending && !layoutOptionsChanged()
+				&& lineTable.matches(contentWidth, flowLayoutOptions.itemsPerLine) && lineTable.getLineCount() > 0;
+		placeholderMode = fromPlaceholders;
+		boolean layoutFromEnd = stackFromEnd && anchoredToEnd && !scrollPositionPending;
+		// alignment or item per line limit changed without data change, items keep their sizes.
+		int anchorPosition = RecyclerView.NO_POSITION, anchorTop = 0, lastAttachedPosition = RecyclerView.NO_POSITION;
+		if (layoutOptionsChanged()) {
+			if (!layoutFromEnd && !scrollPositionPending && getChildCount() > 0) {
+				anchorPosition = getChildAdapterPosition(0);
+				anchorTop = getDecoratedTop(getChildAt(0));
+				lastAttachedPosition = getChildAdapterPosition(getChildCount() - 1);
+			}
+			flowLayoutOptions = FlowLayoutOptions.clone(newFlowLayoutOptions);
+		}
+		if (traceRecorder != null) {
+			recordTraceState();
+		}
 		detachAndScrapAttachedViews(recycler);
+		if (!fromPlaceholders) {
+			releasePlaceholderViews(recycler);
+		}
+		if (fromPlaceholders) {
+			layoutPlaceholderLines(recycler);
+		} else if (layoutFromEnd) {
+			layoutFromEnd(recycler);
+		} else if (anchorPosition != RecyclerView.NO_POSITION && extendLineTable(anchorPosition, null)) {
+			// lines before anchor come from known sizes, keep anchor line where it was.
+			layoutLinesFromTable(lineTable.getLineForPosition(anchorPosition), anchorTop, anchorPosition, lastAttachedPosition, recycler);
+		} else {
+			layoutFromFirstChild(recycler);
+		}
+		if (getChildCount() > 0) {
+			firstChildAdapterPosition = getChildAdapterPosition(0);
+		}
+		scrollPositionPending = false;
+		if (traceRecorder != null) {
+			traceRecorder.recordLayoutPass(getChildCount() > 0 ? firstChildAdapterPosition : RecyclerView.NO_POSITION,
+					getChildCount() > 0 ? getDecoratedTop(getChildAt(0)) - topVisibleEdge() : 0);
+		}
+		onLayoutPassFinished();
+	}
+
+	private void layoutFromFirstChild(RecyclerView.Recycler recycler) {
 		Point startPoint = layoutStartPoint();
 		int x = startPoint.x, y = startPoint.y;
 		int itemCount = getItemCount();
@@ -182,6 +333,385 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
 		}
 	}
 
+	/**
+	 * Layout with last line at bottom edge. Line breaks still come from beginning of data set, but
+	 * through line table, so views are only created for visible lines once item sizes are known.
+	 */
+	private void layoutFromEnd(RecyclerView.Recycler recycler) {
+		if (getItemCount() == 0) {
+			return;
+		}
+		if (flowLayoutOptions.itemsPerLine == 1) {
+			layoutSingleItemLinesFromEnd(recycler);
+			return;
+		}
+		extendLineTable(getItemCount() - 1, recycler);
+		int lastLine = lineTable.getLineCount() - 1;
+		int contentBottom = lineTable.getLineBottom(lastLine);
+		int firstLine = lineTable.getLineAt(contentBottom - (bottomVisibleEdge() - topVisibleEdge()));
+		if (firstLine < 0) {
+			// content is shorter than screen, stays at bottom.
+			firstLine = 0;
+		}
+		int top = bottomVisibleEdge() - (contentBottom - lineTable.getLineTop(firstLine));
+		layoutLinesFromTable(firstLine, top, RecyclerView.NO_POSITION, RecyclerView.NO_POSITION, recycler);
+	}
+
+	/**
+	 * With one item per line, lines do not depend on items before them, so only items on screen are measured,
+	 * from last one up.
+	 */
+	private void layoutSingleItemLinesFromEnd(RecyclerView.Recycler recycler) {
+		int bottom = bottomVisibleEdge();
+		for (int position = getItemCount() - 1; position >= 0 && bottom > topVisibleEdge(); position --) {
+			View child = recycler.getViewForPosition(position);
+			measureChild(child);
+			int width = getDecoratedMeasuredWidth(child), top = bottom - getDecoratedMeasuredHeight(child);
+			addView(child, 0);
+			if (flowLayoutOptions.alignment == Alignment.RIGHT) {
+				layoutDecorated(child, rightVisibleEdge() - width, top, rightVisibleEdge(), bottom);
+			} else {
+				layoutDecorated(child, leftVisibleEdge(), top, leftVisibleEdge() + width, bottom);
+			}
+			bottom = top;
+		}
+	}
+
+	/**
+	 * Layout lines from line table, starting with first line at top, until bottom edge.
+	 * @param reuseFrom items in [reuseFrom, reuseTo] were attached before this layout, they are not measured
+	 *                  again if nothing about them changed. NO_POSITION to measure all items.
+	 */
+	private void layoutLinesFromTable(int firstLine, int top, int reuseFrom, int reuseTo, RecyclerView.Recycler recycler) {
+		int lineOffset = top - lineTable.getLineTop(firstLine);
+		int position = lineTable.getLineStart(firstLine);
+		int itemCount = getItemCount();
+		Rect rect = new Rect();
+		while (position < itemCount) {
+			View child = getViewForPosition(position, recycler);
+			if (reuseFrom == RecyclerView.NO_POSITION || position < reuseFrom || position > reuseTo || !isMeasurementReusable(child, position)) {
+				measureChild(child);
+			}
+			// real size may be different from the one line table was built with.
+			extendLineTable(position, recycler);
+			int lineTop = lineOffset + lineTable.getLineTop(lineTable.getLineForPosition(position));
+			if (lineTop >= bottomVisibleEdge()) {
+				recycler.recycleView(child);
+				return;
+			}
+			calcItemRectFromTable(position, lineTop, rect);
+			addView(child);
+			layoutDecorated(child, rect.left, rect.top, rect.right, rect.bottom);
+			position ++;
+		}
+	}
+
+	/**
+	 * Called after every real layout and scroll.
+	 */
+	private void onLayoutPassFinished() {
+		if (stackFromEnd && !placeholderMode) {
+			updateAnchoredToEnd();
+		}
+		updateAttachedLines();
+		if (layoutSnapshotEnabled) {
+			publishLayoutSnapshot();
+		}
+		if (sizeWarmUpEnabled) {
+			warmUpIdleFrames = 0;
+			scheduleWarmUp();
+		}
+	}
+
+	private void publishLayoutSnapshot() {
+		int childCount = getChildCount();
+		int[] positions = new int[childCount];
+		int[] rects = new int[childCount * 4];
+		copyChildRects(positions, rects);
+		if (childCount > 0) {
+			// only known sizes, never create views for snapshot.
+			extendLineTable(positions[childCount - 1], null);
+		}
+		int lineOffset = lineTableOffset();
+		layoutSnapshot = LayoutSnapshot.create(layoutSnapshot, ++ layoutSnapshotVersion, getWidth(), getHeight(),
+				positions, rects, lineTable, lineTable.takeFirstChangedLine(), lineOffset != NO_LINE_OFFSET, lineOffset);
+	}
+
+	/**
+	 * @return y of line table's first line top on screen, or NO_LINE_OFFSET if attached lines do not
+	 * line up with line table.
+	 */
+	private int lineTableOffset() {
+		if (placeholderMode) {
+			return placeholderLineOffset;
+		}
+		if (getChildCount() == 0) {
+			return NO_LINE_OFFSET;
+		}
+		int firstPosition = getChildAdapterPosition(0);
+		extendLineTable(firstPosition, null);
+		int line = lineTable.getLineForPosition(firstPosition);
+		if (line < 0 || lineTable.getLineStart(line) != firstPosition) {
+			return NO_LINE_OFFSET;
+		}
+		return getDecoratedTop(getChildAt(0)) - lineTable.getLineTop(line);
+	}
+
+	/**
+	 * Extend line table with known sizes until it reaches y, relative to first line top.
+	 */
+	private void extendLineTableToY(int y) {
+		while (lineTable.getTotalHeight() <= y && lineTable.getItemCount() < getItemCount()) {
+			if (!extendLineTable(lineTable.getItemCount(), null)) {
+				return;
+			}
+		}
+	}
+
+	/*****************fling placeholder related functions*****************/
+
+	private boolean shouldStartPlaceholders(int dy) {
+		return flingPlaceholderThreshold > 0 && Math.abs(dy) >= flingPlaceholderThreshold
+				&& scrollState == RecyclerView.SCROLL_STATE_SETTLING && !isSmoothScrolling();
+	}
+
+	/**
+	 * Replace attached views with placeholders, if attached lines line up with line table and known sizes
+	 * cover the next scroll.
+	 */
+	private void startPlaceholders(int dy, RecyclerView.Recycler recycler) {
+		int offset = lineTableOffset();
+		if (offset == NO_LINE_OFFSET) {
+			return;
+		}
+		placeholderLineOffset = offset;
+		if (!placeholdersCover(dy)) {
+			return;
+		}
+		// keep views out of recycled view pool, it holds only a few of each view type.
+		for (int i = getChildCount() - 1; i >= 0; i --) {
+			placeholderViews.add(getChildAt(i));
+			removeViewAt(i);
+		}
+		placeholderMode = true;
+	}
+
+	/**
+	 * Whether line table covers the screen after scrolling placeholders by dy.
+	 */
+	private boolean placeholdersCover(int dy) {
+		int y = bottomVisibleEdge() - placeholderLineOffset + Math.max(dy, 0);
+		extendLineTableToY(y);
+		return lineTable.getTotalHeight() > y || lineTable.getItemCount() >= getItemCount();
+	}
+
+	private int scrollPlaceholders(int dy) {
+		int consumed;
+		if (dy > 0) {
+			// only the end of data set stops scroll, line table covers the rest.
+			int bottomSpace = lineTable.getItemCount() >= getItemCount() ?
+					placeholderLineOffset + lineTable.getTotalHeight() - bottomVisibleEdge() : dy;
+			consumed = Math.min(dy, Math.max(bottomSpace, 0));
+		} else {
+			consumed = Math.max(dy, Math.min(placeholderLineOffset - topVisibleEdge(), 0));
+		}
+		placeholderLineOffset -= consumed;
+		updatePlaceholderRange();
+		return consumed;
+	}
+
+	private void updatePlaceholderRange() {
+		int firstLine = Math.max(lineTable.getLineAt(topVisibleEdge() - placeholderLineOffset), 0);
+		int lastLine = lineTable.getLineAt(bottomVisibleEdge() - 1 - placeholderLineOffset);
+		if (lastLine < 0) {
+			lastLine = lineTable.getLineCount() - 1;
+		}
+		firstPlaceholderPosition = lineTable.getLineStart(firstLine);
+		lastPlaceholderPosition = lineTable.getLineEnd(lastLine) - 1;
+		firstChildAdapterPosition = firstPlaceholderPosition;
+	}
+
+	/**
+	 * Bind real views at placeholder rects, so content does not move when placeholders go away.
+	 */
+	private void layoutPlaceholderLines(RecyclerView.Recycler recycler) {
+		placeholderMode = false;
+		firstPlaceholderPosition = lastPlaceholderPosition = RecyclerView.NO_POSITION;
+		int topY = topVisibleEdge() - placeholderLineOffset;
+		extendLineTableToY(topY);
+		int firstLine = topY < 0 ? 0 : lineTable.getLineAt(topY);
+		if (firstLine < 0 || lineTable.getLineCount() == 0) {
+			// lines are gone with data change, start over from first placeholder.
+			layoutFromFirstChild(recycler);
+		} else {
+			layoutLinesFromTable(firstLine, placeholderLineOffset + lineTable.getLineTop(firstLine),
+					RecyclerView.NO_POSITION, RecyclerView.NO_POSITION, recycler);
+		}
+		if (getChildCount() > 0) {
+			firstChildAdapterPosition = getChildAdapterPosition(0);
+		}
+		releasePlaceholderViews(recycler);
+	}
+
+	/**
+	 * View for position, rebound from views removed for placeholders if one of the same view type is left.
+	 */
+	private View getViewForPosition(int position, RecyclerView.Recycler recycler) {
+		if (!placeholderViews.isEmpty() && recyclerView != null && recyclerView.getAdapter() != null) {
+			int viewType = recyclerView.getAdapter().getItemViewType(position);
+			for (int i = placeholderViews.size() - 1; i >= 0; i --) {
+				View view = placeholderViews.get(i);
+				if (getItemViewType(view) == viewType) {
+					placeholderViews.remove(i);
+					recycler.bindViewToPosition(view, position);
+					return view;
+				}
+			}
+		}
+		return recycler.getViewForPosition(position);
+	}
+
+	/**
+	 * Recycle views removed for placeholders which were not rebound.
+	 */
+	private void releasePlaceholderViews(RecyclerView.Recycler recycler) {
+		for (View view : placeholderViews) {
+			recycler.recycleView(view);
+		}
+		placeholderViews.clear();
+	}
+
+	private void updatePlaceholderDecoration() {
+		if (recyclerView == null) {
+			return;
+		}
+		if (flingPlaceholderThreshold > 0 && placeholderDecoration == null) {
+			placeholderDecoration = new PlaceholderDecoration(this,
+					recyclerView.getResources().getDisplayMetrics().density, placeholderColor);
+			recyclerView.addItemDecoration(placeholderDecoration);
+		} else if (flingPlaceholderThreshold == 0 && placeholderDecoration != null) {
+			recyclerView.removeItemDecoration(placeholderDecoration);
+			placeholderDecoration = null;
+		}
+	}
+
+	/**
+	 * Copy adapter positions and decorated left, top, right, bottom of attached children.
+	 */
+	private void copyChildRects(int[] positions, int[] rects) {
+		for (int i = 0; i < positions.length; i ++) {
+			View child = getChildAt(i);
+			positions[i] = getChildAdapterPosition(child);
+			rects[i * 4] = getDecoratedLeft(child);
+			rects[i * 4 + 1] = getDecoratedTop(child);
+			rects[i * 4 + 2] = getDecoratedRight(child);
+			rects[i * 4 + 3] = getDecoratedBottom(child);
+		}
+	}
+
+	/**
+	 * Rebuild attached lines and visible range, so visible range queries don't need to walk children.
+	 */
+	private void updateAttachedLines() {
+		int oldFirstVisiblePosition = firstVisiblePosition, oldLastVisiblePosition = lastVisiblePosition;
+		attachedLines.clear();
+		firstVisiblePosition = lastVisiblePosition = RecyclerView.NO_POSITION;
+		firstCompletelyVisiblePosition = lastCompletelyVisiblePosition = RecyclerView.NO_POSITION;
+		firstVisibleLine = 0;
+		visibleLineCount = 0;
+		int topEdge = topVisibleEdge(), bottomEdge = bottomVisibleEdge();
+		LayoutContext layoutContext = LayoutContext.fromLayoutOptions(flowLayoutOptions);
+		for (int i = 0; i < getChildCount(); i ++) {
+			View child = getChildAt(i);
+			int position = getChildAdapterPosition(child);
+			int top = getDecoratedTop(child), bottom = getDecoratedBottom(child);
+			if (isStartOfLine(i, layoutContext)) {
+				attachedLines.startLine(i, position, top);
+			}
+			attachedLines.addChild(i, position, bottom);
+			if (bottom > topEdge && top < bottomEdge) {
+				if (firstVisiblePosition == RecyclerView.NO_POSITION) {
+					firstVisiblePosition = position;
+				}
+				lastVisiblePosition = position;
+				if (top >= topEdge && bottom <= bottomEdge) {
+					if (firstCompletelyVisiblePosition == RecyclerView.NO_POSITION) {
+						firstCompletelyVisiblePosition = position;
+					}
+					lastCompletelyVisiblePosition = position;
+				}
+			}
+		}
+		if (placeholderMode) {
+			firstVisiblePosition = firstPlaceholderPosition;
+			lastVisiblePosition = lastPlaceholderPosition;
+		}
+		for (int line = 0; line < attachedLines.getLineCount(); line ++) {
+			if (attachedLines.getBottom(line) > topEdge && attachedLines.getTop(line) < bottomEdge) {
+				if (visibleLineCount == 0) {
+					firstVisibleLine = line;
+				}
+				visibleLineCount ++;
+			}
+		}
+		if (onVisibleRangeChangedListener != null
+				&& (oldFirstVisiblePosition != firstVisiblePosition || oldLastVisiblePosition != lastVisiblePosition)) {
+			onVisibleRangeChangedListener.onVisibleRangeChanged(firstVisiblePosition, lastVisiblePosition);
+		}
+	}
+
+	/**
+	 * Forget attached lines and visible range until next layout, children they point to are gone with old adapter.
+	 */
+	private void clearAttachedLines() {
+		int oldFirstVisiblePosition = firstVisiblePosition, oldLastVisiblePosition = lastVisiblePosition;
+		attachedLines.clear();
+		firstVisiblePosition = lastVisiblePosition = RecyclerView.NO_POSITION;
+		firstCompletelyVisiblePosition = lastCompletelyVisiblePosition = RecyclerView.NO_POSITION;
+		firstVisibleLine = 0;
+		visibleLineCount = 0;
+		if (onVisibleRangeChangedListener != null
+				&& (oldFirstVisiblePosition != firstVisiblePosition || oldLastVisiblePosition != lastVisiblePosition)) {
+			onVisibleRangeChangedListener.onVisibleRangeChanged(firstVisiblePosition, lastVisiblePosition);
+		}
+	}
+
+	/**
+	 * Whether scrapped child still has the measured size in size cache.
+	 */
+	private boolean isMeasurementReusable(View child, int adapterPosition) {
+		RecyclerView.LayoutParams layoutParams = (RecyclerView.LayoutParams) child.getLayoutParams();
+		return !child.isLayoutRequested() && !layoutParams.isItemChanged() && !layoutParams.isViewInvalid()
+				&& itemSizeCache.hasSize(adapterPosition);
+	}
+
+	private boolean layoutOptionsChanged() {
+		return flowLayoutOptions.alignment != newFlowLayoutOptions.alignment
+				|| flowLayoutOptions.itemsPerLine != newFlowLayoutOptions.itemsPerLine;
+	}
+
+	/**
+	 * Apply new options in next layout, from item sizes already known. Items move to new location with
+	 * item animator.
+	 */
+	private void requestLayoutForNewOptions() {
+		if (layoutOptionsChanged()) {
+			requestSimpleAnimationsInNextLayout();
+			requestLayout();
+		}
+	}
+
+	private void updateAnchoredToEnd() {
+		int childCount = getChildCount();
+		if (childCount == 0) {
+			anchoredToEnd = true;
+			return;
+		}
+		View lastLineItem = getChildAt(getMaxHeightIndexInLine(childCount - 1));
+		anchoredToEnd = getChildAdapterPosition(childCount - 1) == getItemCount() - 1
+				&& getDecoratedBottom(lastLineItem) <= bottomVisibleEdge();
+	}
+
 	@Override
 	public boolean canScrollHorizontally() {
 		return false;
@@ -201,15 +731,76 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
 			return 0;
 		}
 
-		return dy > 0? contentMoveUp(dy, recycler) : contentMoveDown(dy, recycler);
+		if (placeholderMode && (Math.abs(dy) < flingPlaceholderThreshold || !placeholdersCover(dy))) {
+			// slowing down or out of known sizes, bind real views where placeholders are.
+			layoutPlaceholderLines(recycler);
+		} else if (!placeholderMode && shouldStartPlaceholders(dy)) {
+			startPlaceholders(dy, recycler);
+		}
+		int consumed;
+		if (placeholderMode) {
+			consumed = scrollPlaceholders(dy);
+		} else {
+			consumed = dy > 0? contentMoveUp(dy, recycler) : contentMoveDown(dy, recycler);
+		}
+		onLayoutPassFinished();
+		if (traceRecorder != null) {
+			traceRecorder.recordScrollBy(dy, consumed);
+		}
+		return consumed;
 	}
 
 	@Override
 	public void onItemsChanged(RecyclerView recyclerView) {
 		this.flowLayoutOptions = FlowLayoutOptions.clone(newFlowLayoutOptions);
+		itemSizeCache.clear();
+		lineTable.clear();
+		if (traceRecorder != null) {
+			traceRecorder.recordItemsChanged();
+		}
 		super.onItemsChanged(recyclerView);
 	}
 
+	@Override
+	public void onItemsAdded(RecyclerView recyclerView, int positionStart, int itemCount) {
+		itemSizeCache.onItemsAdded(positionStart, itemCount);
+		lineTable.truncate(positionStart);
+		if (traceRecorder != null) {
+			traceRecorder.recordItemsAdded(positionStart, itemCount);
+		}
+		super.onItemsAdded(recyclerView, positionStart, itemCount);
+	}
+
+	@Override
+	public void onItemsRemoved(RecyclerView recyclerView, int positionStart, int itemCount) {
+		itemSizeCache.onItemsRemoved(positionStart, itemCount);
+		lineTable.truncate(positionStart);
+		if (traceRecorder != null) {
+			traceRecorder.recordItemsRemoved(positionStart, itemCount);
+		}
+		super.onItemsRemoved(recyclerView, positionStart, itemCount);
+	}
+
+	@Override
+	public void onItemsUpdated(RecyclerView recyclerView, int positionStart, int itemCount) {
+		itemSizeCache.invalidate(positionStart, itemCount);
+		lineTable.truncate(positionStart);
+		if (traceRecorder != null) {
+			traceRecorder.recordItemsUpdated(positionStart, itemCount);
+		}
+		super.onItemsUpdated(recyclerView, positionStart, itemCount);
+	}
+
+	@Override
+	public void onItemsMoved(RecyclerView recyclerView, int from, int to, int itemCount) {
+		itemSizeCache.onItemsMoved(from, to, itemCount);
+		lineTable.truncate(Math.min(from, to));
+		if (traceRecorder != null) {
+			traceRecorder.recordItemsMoved(from, to, itemCount);
+		}
+		super.onItemsMoved(recyclerView, from, to, itemCount);
+	}
+
 	/**
 	 * Contents moving up to top
 	 */
@@ -233,7 +824,8 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
 		}
 
 		if (offscreenBottom < dy) {
-			actualDy = offscreenBottom;
+			// content may not fill the screen, e.g. stacked from end, never scroll backwards.
+			actualDy = Math.max(offscreenBottom, 0);
 		}
 		offsetChildrenVertical(-actualDy);
 		while (!lineVisible(0)) {
@@ -266,7 +858,7 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
 		}
 
 		if (offScreenTop < Math.abs(dy)) {
-			actualDy = -offScreenTop;
+			actualDy = -Math.max(offScreenTop, 0);
 		}
 
 		offsetChildrenVertical(-actualDy);
@@ -278,53 +870,35 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
 	}
 
 	/**
-	 * Add new line of elements at top, to keep layout, have to virtually layout from beginning.
+	 * Add new line of elements at top. To keep layout, line breaks have to come from beginning of data set,
+	 * line table keeps them, so only the new line is created.
 	 */
 	private void addNewLineAtTop(RecyclerView.Recycler recycler) {
-		int x = layoutStartPoint().x, bottom = getDecoratedTop(getChildAt(getMaxHeightIndexInLine(0))), y;
-		int height = 0;
-		List<View> lineChildren = new LinkedList<>();
-		int currentAdapterPosition = 0;
+		int bottom = getDecoratedTop(getChildAt(getMaxHeightIndexInLine(0))), height = 0;
 		int endAdapterPosition = getChildAdapterPosition(0) - 1;
+		int lineStartPosition;
+		if (flowLayoutOptions.itemsPerLine == 1) {
+			// line is the item itself, no need for line breaks before it.
+			Point itemSize = new Point();
+			getItemSize(endAdapterPosition, recycler, itemSize);
+			lineStartPosition = endAdapterPosition;
+			height = itemSize.y;
+		} else {
+			extendLineTable(endAdapterPosition, recycler);
+			lineStartPosition = lineTable.getLineStart(lineTable.getLineForPosition(endAdapterPosition));
+			for (int position = lineStartPosition; position <= endAdapterPosition; position ++) {
+				height = Math.max(height, lineTable.getItemHeight(position));
+			}
+		}
+
+		int x = layoutStartPoint().x, y = bottom - height;
 		Rect rect = new Rect();
 		boolean newline;
 		boolean firstItem = true;
 		LayoutContext layoutContext = LayoutContext.fromLayoutOptions(flowLayoutOptions);
-		while (currentAdapterPosition <= endAdapterPosition) {
-			View newChild = recycler.getViewForPosition(currentAdapterPosition);
-
-			newline = calcChildLayoutRect(newChild, x, 0, height, layoutContext, rect);
-
-			// add view to make sure not be recycled.
-			addView(newChild, lineChildren.size());
-			if (newline && !firstItem) {
-				// end of one line, but not reach the top line yet. recycle the line and
-				// move on to next.
-				for (View viewToRecycle : lineChildren) {
-					removeAndRecycleView(viewToRecycle, recycler);
-				}
-				lineChildren.clear();
-				x = advanceInSameLine(layoutStartPoint().x, rect, layoutContext);
-				height = rect.height();
-				layoutContext.currentLineItemCount = 1;
-			} else {
-				x = advanceInSameLine(x, rect, layoutContext);
-				height = Math.max(height, rect.height());
-				firstItem = false;
-				layoutContext.currentLineItemCount ++;
-			}
-			lineChildren.add(newChild);
-
-			currentAdapterPosition ++;
-
-		}
-
-		x = layoutStartPoint().x;
-		y = bottom - height;
-		firstItem = true;
-		layoutContext = LayoutContext.fromLayoutOptions(flowLayoutOptions);
-		for (int i = 0; i < lineChildren.size(); i ++) {
-			View childView = lineChildren.get(i);
+		for (int position = lineStartPosition; position <= endAdapterPosition; position ++) {
+			View childView = recycler.getViewForPosition(position);
+			addView(childView, position - lineStartPosition);
 			newline = calcChildLayoutRect(childView, x, y, height, layoutContext, rect);
 			if (newline && firstItem) {
 				int rectHeight = rect.height();
@@ -373,6 +947,46 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
 	public void onAttachedToWindow(RecyclerView view) {
 		super.onAttachedToWindow(view);
 		this.recyclerView = view;
+		updatePlaceholderDecoration();
+	}
+
+	@Override
+	public void onDetachedFromWindow(RecyclerView view, RecyclerView.Recycler recycler) {
+		cancelWarmUp();
+		releasePlaceholderViews(recycler);
+		if (placeholderDecoration != null) {
+			view.removeItemDecoration(placeholderDecoration);
+			placeholderDecoration = null;
+		}
+		super.onDetachedFromWindow(view, recycler);
+	}
+
+	@Override
+	public void onAdapterChanged(RecyclerView.Adapter oldAdapter, RecyclerView.Adapter newAdapter) {
+		// views of old adapter can't be bound by new one.
+		placeholderViews.clear();
+		// setAdapter and swapAdapter don't call onItemsChanged, sizes belong to old adapter.
+		itemSizeCache.clear();
+		lineTable.clear();
+		if (traceRecorder != null) {
+			traceRecorder.recordItemsChanged();
+		}
+		clearAttachedLines();
+		super.onAdapterChanged(oldAdapter, newAdapter);
+	}
+
+	@Override
+	public void onScrollStateChanged(int state) {
+		scrollState = state;
+		if (state == RecyclerView.SCROLL_STATE_IDLE) {
+			if (placeholderMode) {
+				requestLayout();
+			}
+			warmUpIdleFrames = 0;
+			scheduleWarmUp();
+		} else {
+			cancelWarmUp();
+		}
 	}
 
 	@Override
@@ -382,7 +996,11 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
 
 	@Override
 	public void scrollToPosition(int position) {
+		if (traceRecorder != null) {
+			traceRecorder.recordScrollTo(position);
+		}
 		firstChildAdapterPosition = position;
+		scrollPositionPending = true;
 		requestLayout();
 	}
 
@@ -391,9 +1009,16 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
 		RecyclerView.SmoothScroller smoothScroller = new LinearSmoothScroller(recyclerView.getContext()) {
 			@Override
 			public PointF computeScrollVectorForPosition(int targetPosition) {
+				if (getChildCount() == 0) {
+					// showing placeholders, or nothing to scroll.
+					return null;
+				}
 				return new PointF(0, getOffsetOfItemToFirstChild(targetPosition, recyclerRef));
 			}
 		};
+		if (traceRecorder != null) {
+			traceRecorder.recordSmoothScrollTo(position);
+		}
 		smoothScroller.setTargetPosition(position);
 		startSmoothScroll(smoothScroller);
 	}
@@ -525,11 +1150,12 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
 				int x = layoutStartPoint().x;
 				int height = 0;
 				Rect rect = new Rect();
+				Point itemSize = new Point();
 				boolean newline;
 				LayoutContext layoutContext = LayoutContext.fromLayoutOptions(flowLayoutOptions);
 				while (targetAdapterPosition != adapterPosition) {
-					View nextChild = recycler.getViewForPosition(targetAdapterPosition);
-					newline = calcChildLayoutRect(nextChild, x, y, height, layoutContext, rect);
+					getItemSize(targetAdapterPosition, recycler, itemSize);
+					newline = calcChildLayoutRect(itemSize.x, itemSize.y, x, y, height, layoutContext, rect);
 					if (newline) {
 						x = advanceInSameLine(layoutStartPoint().x, rect, layoutContext);
 						y = rect.top;
@@ -537,38 +1163,19 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
 						layoutContext.currentLineItemCount = 1;
 					} else {
 						x = advanceInSameLine(x, rect, layoutContext);
-						height = Math.max(height, getDecoratedMeasuredHeight(nextChild));
+						height = Math.max(height, itemSize.y);
 						layoutContext.currentLineItemCount ++;
 					}
-					recycler.recycleView(nextChild);
 					targetAdapterPosition ++;
 				}
 				return y;
 			}
 		} else {
-			// target is off screen top, Need to start from beginning in data set
-			int targetAdapterPosition = 0, x = layoutStartPoint().x, height = 0;
-			int y = topVisibleEdge() - getDecoratedTop(getChildAt(0));
-			Rect rect = new Rect();
-			boolean newline;
-			LayoutContext layoutContext = LayoutContext.fromLayoutOptions(flowLayoutOptions);
-			while (targetAdapterPosition <= firstChildPosition) {
-				View child = recycler.getViewForPosition(targetAdapterPosition);
-				newline = calcChildLayoutRect(child, x, y, height, rect);
-				if (newline) {
-					x = advanceInSameLine(layoutStartPoint().x, rect);
-					height = rect.height();
-					if (targetAdapterPosition >= adapterPosition) {
-						y += height;
-					}
-					layoutContext.currentLineItemCount = 1;
-				} else {
-					x = advanceInSameLine(x, rect);
-					height = Math.max(height, getDecoratedMeasuredHeight(child));
-					layoutContext.currentLineItemCount ++;
-				}
-				targetAdapterPosition ++;
-			}
+			// target is off screen top, line breaks from beginning of data set are in line table.
+			extendLineTable(firstChildPosition, recycler);
+			int y = topVisibleEdge() - getDecoratedTop(getChildAt(0))
+					+ lineTable.getLineTop(lineTable.getLineForPosition(firstChildPosition))
+					- lineTable.getLineTop(lineTable.getLineForPosition(adapterPosition));
 			return -y;
 		}
 	}
@@ -582,33 +1189,802 @@ public class FlowLayoutManager extends RecyclerView.LayoutManager {
 
 	public FlowLayoutManager setAlignment(Alignment alignment) {
 		newFlowLayoutOptions.alignment = alignment;
+		requestLayoutForNewOptions();
 		return this;
 	}
 
 	public FlowLayoutManager singleItemPerLine() {
 		newFlowLayoutOptions.itemsPerLine = 1;
+		requestLayoutForNewOptions();
 		return this;
 	}
 
 	public FlowLayoutManager maxItemsPerLine(int itemsPerLine) {
 		newFlowLayoutOptions.itemsPerLine = itemsPerLine;
+		requestLayoutForNewOptions();
 		return this;
 	}
 
 	public FlowLayoutManager removeItemPerLineLimit() {
 		newFlowLayoutOptions.itemsPerLine = FlowLayoutOptions.ITEM_PER_LINE_NO_LIMIT;
+		requestLayoutForNewOptions();
 		return this;
 	}
 
-	/*****************alignment related functions*****************/
-	private boolean calcChildLayoutRect(View child, int x, int y, int lineHeight, Rect rect) {
-		return calcChildLayoutRect(child, x, y, lineHeight, LayoutContext.fromLayoutOptions(flowLayoutOptions), rect);
+	/**
+	 * @return adapter position of first item on screen, or NO_POSITION if there is none.
+	 */
+	public int findFirstVisibleItemPosition() {
+		return firstVisiblePosition;
 	}
-	private boolean calcChildLayoutRect(View child, int x, int y, int lineHeight, LayoutContext layoutContext, Rect rect) {
-		boolean newLine;
-		measureChildWithMargins(child, 0, 0);
-		int childWidth = getDecoratedMeasuredWidth(child);
-		int childHeight = getDecoratedMeasuredHeight(child);
+
+	public int findLastVisibleItemPosition() {
+		return lastVisiblePosition;
+	}
+
+	public int findFirstCompletelyVisibleItemPosition() {
+		return firstCompletelyVisiblePosition;
+	}
+
+	public int findLastCompletelyVisibleItemPosition() {
+		return lastCompletelyVisiblePosition;
+	}
+
+	/**
+	 * Number of lines on screen, including partially visible ones.
+	 */
+	public int getVisibleLineCount() {
+		return visibleLineCount;
+	}
+
+	/**
+	 * @param visibleLine index of line on screen, 0 is the top one.
+	 * @return NO_POSITION if visibleLine is not in [0, {@link #getVisibleLineCount()}).
+	 */
+	public int getVisibleLineFirstPosition(int visibleLine) {
+		if (visibleLine < 0 || visibleLine >= visibleLineCount) {
+			return RecyclerView.NO_POSITION;
+		}
+		return attachedLines.getFirstPosition(firstVisibleLine + visibleLine);
+	}
+
+	public int getVisibleLineLastPosition(int visibleLine) {
+		if (visibleLine < 0 || visibleLine >= visibleLineCount) {
+			return RecyclerView.NO_POSITION;
+		}
+		return attachedLines.getLastPosition(firstVisibleLine + visibleLine);
+	}
+
+	/**
+	 * @return fraction of item height on screen, 0 if item is not attached.
+	 */
+	public float getItemVisibleFraction(int adapterPosition) {
+		View child = findAttachedChild(adapterPosition);
+		if (child == null) {
+			return 0;
+		}
+		int top = getDecoratedTop(child), bottom = getDecoratedBottom(child);
+		if (bottom <= top) {
+			return 0;
+		}
+		int visibleHeight = Math.min(bottom, bottomVisibleEdge()) - Math.max(top, topVisibleEdge());
+		return visibleHeight <= 0 ? 0 : (float) visibleHeight / (bottom - top);
+	}
+
+	/**
+	 * Child of item from attached lines, children in pre layout or being removed may leave gaps in positions.
+	 */
+	private View findAttachedChild(int adapterPosition) {
+		for (int line = 0; line < attachedLines.getLineCount(); line ++) {
+			if (adapterPosition < attachedLines.getFirstPosition(line) || adapterPosition > attachedLines.getLastPosition(line)) {
+				continue;
+			}
+			for (int i = attachedLines.getFirstChildIndex(line); i <= attachedLines.getLastChildIndex(line); i ++) {
+				if (getChildAdapterPosition(getChildAt(i)) == adapterPosition) {
+					return getChildAt(i);
+				}
+			}
+			return null;
+		}
+		return null;
+	}
+
+	public FlowLayoutManager setOnVisibleRangeChangedListener(OnVisibleRangeChangedListener listener) {
+		this.onVisibleRangeChangedListener = listener;
+		return this;
+	}
+
+	/**
+	 * Item under point, in RecyclerView coordinates. Besides attached children, items off screen are
+	 * found from line table as far as their sizes are known, e.g. for auto scroll during drag select.
+	 * @return adapter position, or NO_POSITION if there is no item.
+	 */
+	public int findItemAt(int x, int y) {
+		int lineCount = attachedLineCount();
+		if (lineCount == 0 || y < attachedLines.getTop(0) || y >= attachedLines.getBottom(lineCount - 1)) {
+			if (!prepareHitTestLines(lineCount > 0 && y < attachedLines.getTop(0))) {
+				return RecyclerView.NO_POSITION;
+			}
+			return findItemInHitTestLines(x, y);
+		}
+		int line = attachedLines.findLineAt(y);
+		int lineOffset = toLineOffset(x);
+		int index = findChildInLine(line, lineOffset);
+		if (index < 0) {
+			return RecyclerView.NO_POSITION;
+		}
+		View child = getChildAt(index);
+		if (lineOffset >= getChildLineOffset(child) + getDecoratedMeasuredWidth(child) || y >= getDecoratedBottom(child)) {
+			return RecyclerView.NO_POSITION;
+		}
+		return getChildAdapterPosition(child);
+	}
+
+	/**
+	 * Add adapter positions of items intersecting rect, in RecyclerView coordinates, in adapter order.
+	 * Like {@link #findItemAt(int, int)}, off screen items are included as far as their sizes are known.
+	 */
+	public void findItemsInRect(Rect rect, PositionList outPositions) {
+		int lineCount = attachedLineCount();
+		if (lineCount == 0) {
+			if (prepareHitTestLines(false)) {
+				addItemsInHitTestLines(rect, rect.top, rect.bottom, outPositions);
+			}
+			return;
+		}
+		int attachedTop = attachedLines.getTop(0), attachedBottom = attachedLines.getBottom(lineCount - 1);
+		if (rect.top < attachedTop && prepareHitTestLines(true)) {
+			addItemsInHitTestLines(rect, rect.top, Math.min(rect.bottom, attachedTop), outPositions);
+		}
+		int lineStartOffset = toLineOffset(rect.left), lineEndOffset = toLineOffset(rect.right - 1);
+		if (lineStartOffset > lineEndOffset) {
+			int temp = lineStartOffset;
+			lineStartOffset = lineEndOffset;
+			lineEndOffset = temp;
+		}
+		for (int line = Math.max(attachedLines.findLineAt(rect.top), 0); line < lineCount && attachedLines.getTop(line) < rect.bottom; line ++) {
+			if (attachedLines.getBottom(line) <= rect.top) {
+				continue;
+			}
+			int index = Math.max(findChildInLine(line, lineStartOffset), attachedLines.getFirstChildIndex(line));
+			for (; index <= attachedLines.getLastChildIndex(line); index ++) {
+				View child = getChildAt(index);
+				int childLineOffset = getChildLineOffset(child);
+				if (childLineOffset > lineEndOffset) {
+					break;
+				}
+				if (childLineOffset + getDecoratedMeasuredWidth(child) > lineStartOffset
+						&& getDecoratedTop(child) < rect.bottom && getDecoratedBottom(child) > rect.top) {
+					outPositions.add(getChildAdapterPosition(child));
+				}
+			}
+		}
+		if (rect.bottom > attachedBottom && prepareHitTestLines(false)) {
+			addItemsInHitTestLines(rect, Math.max(rect.top, attachedBottom), rect.bottom, outPositions);
+		}
+	}
+
+	/**
+	 * When scroll is idle, use the time left in each frame to measure items below line table end, so later
+	 * scroll to position, smooth scroll or line lookups find their sizes ready.
+	 */
+	public FlowLayoutManager setSizeWarmUpEnabled(boolean enabled) {
+		this.sizeWarmUpEnabled = enabled;
+		if (enabled) {
+			warmUpIdleFrames = 0;
+			scheduleWarmUp();
+		} else {
+			cancelWarmUp();
+		}
+		return this;
+	}
+
+	/**
+	 * Number of items measured by size warm up.
+	 */
+	public int getWarmedItemCount() {
+		return warmedItemCount;
+	}
+
+	/**
+	 * Number of items whose size is known, by layout, item measurer or warm up.
+	 */
+	public int getKnownSizeCount() {
+		return itemSizeCache.getKnownCount();
+	}
+
+	/**
+	 * Fraction of data set covered by line table, 1 when lines of all items are known.
+	 */
+	public float getWarmUpProgress() {
+		int itemCount = getItemCount();
+		return itemCount == 0 ? 1 : (float) Math.min(lineTable.getItemCount(), itemCount) / itemCount;
+	}
+
+	/**
+	 * During a fast fling, scroll over lines of known item sizes without binding views, until scroll slows
+	 * down below threshold. Real views are then rebound at placeholder rects, from the views the fling started
+	 * with when view types match. Placeholders are drawn as rounded rects by an item decoration the layout
+	 * manager adds, see {@link #setPlaceholderColor(int)}.
+	 * @param pixelsPerFrame scroll distance of one frame to start placeholders, 0 to disable.
+	 */
+	public FlowLayoutManager setFlingPlaceholderThreshold(int pixelsPerFrame) {
+		this.flingPlaceholderThreshold = Math.max(pixelsPerFrame, 0);
+		if (flingPlaceholderThreshold == 0 && placeholderMode) {
+			requestLayout();
+		}
+		updatePlaceholderDecoration();
+		return this;
+	}
+
+	/**
+	 * Color of placeholder rects, transparent to draw them yourself with {@link #getPlaceholderRect(int, Rect)}.
+	 */
+	public FlowLayoutManager setPlaceholderColor(int color) {
+		this.placeholderColor = color;
+		if (placeholderDecoration != null) {
+			placeholderDecoration.setColor(color);
+		}
+		return this;
+	}
+
+	public boolean isShowingPlaceholders() {
+		return placeholderMode;
+	}
+
+	/**
+	 * @return first adapter position shown as placeholder, or NO_POSITION if not showing placeholders.
+	 */
+	public int getFirstPlaceholderPosition() {
+		return placeholderMode ? firstPlaceholderPosition : RecyclerView.NO_POSITION;
+	}
+
+	/**
+	 * @return last adapter position shown as placeholder, or NO_POSITION if not showing placeholders.
+	 */
+	public int getLastPlaceholderPosition() {
+		return placeholderMode ? lastPlaceholderPosition : RecyclerView.NO_POSITION;
+	}
+
+	/**
+	 * Decorated rect of placeholder item, in RecyclerView coordinates.
+	 * @return false if item is not shown as placeholder.
+	 */
+	public boolean getPlaceholderRect(int adapterPosition, Rect outRect) {
+		if (!placeholderMode || adapterPosition < firstPlaceholderPosition || adapterPosition > lastPlaceholderPosition) {
+			return false;
+		}
+		int lineTop = placeholderLineOffset + lineTable.getLineTop(lineTable.getLineForPosition(adapterPosition));
+		calcItemRectFromTable(adapterPosition, lineTop, outRect);
+		return true;
+	}
+
+	/**
+	 * Publish an immutable layout snapshot after every layout and scroll, for readers on other threads.
+	 */
+	public FlowLayoutManager setLayoutSnapshotEnabled(boolean enabled) {
+		this.layoutSnapshotEnabled = enabled;
+		if (!enabled) {
+			layoutSnapshot = null;
+		}
+		return this;
+	}
+
+	/**
+	 * Latest published layout snapshot, can be called from any thread.
+	 * @return null if snapshot is not enabled or nothing is laid out yet.
+	 */
+	public LayoutSnapshot getLayoutSnapshot() {
+		return layoutSnapshot;
+	}
+
+	/**
+	 * Anchor content to bottom, for chat like lists. Stays at bottom when items are added, until scrolled away.
+	 * Line breaks start from the first item, so a layout anchored to bottom needs sizes of all items. Sizes
+	 * come from size cache and item measurer when possible, the others are bound and measured once, e.g. in
+	 * first layout or after data set change. Set an {@link ItemMeasurer} to avoid binding views for that.
+	 * With {@link #singleItemPerLine()} lines don't depend on items before them, only items on screen are
+	 * measured.
+	 */
+	public FlowLayoutManager setStackFromEnd(boolean stackFromEnd) {
+		if (this.stackFromEnd != stackFromEnd) {
+			this.stackFromEnd = stackFromEnd;
+			anchoredToEnd = true;
+			requestLayout();
+		}
+		return this;
+	}
+
+	public boolean isStackFromEnd() {
+		return stackFromEnd;
+	}
+
+	/**
+	 * Use item measurer for items which are not going to be attached, instead of binding and measuring views.
+	 */
+	public FlowLayoutManager setItemMeasurer(ItemMeasurer itemMeasurer) {
+		this.itemMeasurer = itemMeasurer;
+		// sizes from previous measurer may not be right any more.
+		itemSizeCache.clear();
+		lineTable.clear();
+		return this;
+	}
+
+	/**
+	 * In verification mode, every measured view is compared with item measurer result. Mismatches are
+	 * reported to mismatch listener, or logged if there is no listener.
+	 */
+	public FlowLayoutManager setMeasurerVerificationEnabled(boolean enabled) {
+		this.measurerVerificationEnabled = enabled;
+		return this;
+	}
+
+	public FlowLayoutManager setMeasureMismatchListener(MeasureMismatchListener listener) {
+		this.measureMismatchListener = listener;
+		return this;
+	}
+
+	public int getMeasureMismatchCount() {
+		return measureMismatchCount;
+	}
+
+	/**
+	 * Line structure of data set computed from item sizes, without any view involved. Sizes come from
+	 * items measured before and from item measurer, table stops at first item whose size is unknown, check
+	 * {@link LineTable#getItemCount()}. Only meaningful after first layout, when width is known.
+	 * @return a copy, later layout and size changes do not show up in it.
+	 */
+	public LineTable computeLineTable() {
+		extendLineTable(getItemCount() - 1, null);
+		return lineTable.copy();
+	}
+
+	/*****************trace recording related functions*****************/
+
+	/**
+	 * Start recording scrolls, adapter notifications and item sizes into output stream, for
+	 * {@link LayoutTraceReplayer}. Recording continues until {@link #stopTraceRecording()}.
+	 */
+	public LayoutTraceRecorder startTraceRecording(OutputStream outputStream) {
+		stopTraceRecording();
+		traceRecorder = new LayoutTraceRecorder(outputStream);
+		recordTraceState();
+		// sizes known so far, later ones are recorded when measured.
+		for (int i = 0; i < getItemCount(); i ++) {
+			if (itemSizeCache.hasSize(i)) {
+				traceRecorder.recordItemSize(i, itemSizeCache.getWidth(i), itemSizeCache.getHeight(i));
+			}
+		}
+		if (getChildCount() > 0) {
+			traceRecorder.recordAnchor(getChildAdapterPosition(0), getDecoratedTop(getChildAt(0)) - topVisibleEdge());
+		}
+		return traceRecorder;
+	}
+
+	/**
+	 * Write current layout as final layout, and close trace.
+	 */
+	public void stopTraceRecording() {
+		if (traceRecorder == null) {
+			return;
+		}
+		int childCount = getChildCount();
+		int[] positions = new int[childCount];
+		int[] rects = new int[childCount * 4];
+		copyChildRects(positions, rects);
+		traceRecorder.finish(positions, rects, childCount);
+		traceRecorder = null;
+	}
+
+	private void recordTraceState() {
+		traceRecorder.recordViewport(getWidth(), getHeight(), getPaddingLeft(), getPaddingTop(), getPaddingRight(), getPaddingBottom());
+		traceRecorder.recordOptions(flowLayoutOptions.alignment == Alignment.RIGHT ? LayoutTraceRecorder.ALIGNMENT_RIGHT : LayoutTraceRecorder.ALIGNMENT_LEFT,
+				flowLayoutOptions.itemsPerLine, stackFromEnd);
+		traceRecorder.recordItemCount(getItemCount());
+	}
+
+	/*****************hit test related functions*****************/
+
+	/**
+	 * Attached line count for hit tests, 0 if attached lines point past children, e.g. views removed
+	 * before next layout.
+	 */
+	private int attachedLineCount() {
+		int lineCount = attachedLines.getLineCount();
+		return lineCount == 0 || attachedLines.getLastChildIndex(lineCount - 1) >= getChildCount() ? 0 : lineCount;
+	}
+
+	/**
+	 * Point hit test lines to lines off screen, the way they will be laid out when scrolled in. Lines above
+	 * come from line table, the one next to attached lines cut at first attached item, lines below start
+	 * after last attached item. Both only use known sizes.
+	 * @param above lines above attached lines, otherwise lines below them.
+	 * @return false if there are no such lines.
+	 */
+	private boolean prepareHitTestLines(boolean above) {
+		int lineCount = attachedLineCount();
+		if (lineCount == 0) {
+			if (!placeholderMode) {
+				return false;
+			}
+			hitTestLines = lineTable;
+			hitTestOffset = placeholderLineOffset;
+			hitTestFirstPosition = 0;
+			hitTestEndPosition = getItemCount();
+			return true;
+		}
+		if (above) {
+			int endPosition = attachedLines.getFirstPosition(0);
+			if (endPosition <= 0 || !extendLineTable(endPosition - 1, null)) {
+				return false;
+			}
+			int line = lineTable.getLineForPosition(endPosition - 1);
+			int height = 0;
+			for (int position = lineTable.getLineStart(line); position < endPosition; position ++) {
+				height = Math.max(height, lineTable.getItemHeight(position));
+			}
+			hitTestLines = lineTable;
+			hitTestOffset = attachedLines.getTop(0) - height - lineTable.getLineTop(line);
+			hitTestFirstPosition = 0;
+			hitTestEndPosition = endPosition;
+			return true;
+		}
+		int firstPosition = attachedLines.getLastPosition(lineCount - 1) + 1;
+		if (firstPosition >= getItemCount()) {
+			return false;
+		}
+		belowLineTable.reset(rightVisibleEdge() - leftVisibleEdge(), flowLayoutOptions.itemsPerLine);
+		hitTestLines = belowLineTable;
+		hitTestOffset = attachedLines.getBottom(lineCount - 1);
+		hitTestFirstPosition = firstPosition;
+		hitTestEndPosition = getItemCount();
+		return true;
+	}
+
+	/**
+	 * Extend hit test lines with known sizes until they reach y, relative to their first line top.
+	 */
+	private void extendHitTestLinesToY(int y) {
+		if (hitTestLines == lineTable) {
+			extendLineTableToY(y);
+			return;
+		}
+		Point itemSize = new Point();
+		while (hitTestLines.getTotalHeight() <= y && hitTestFirstPosition + hitTestLines.getItemCount() < hitTestEndPosition) {
+			if (!peekItemSize(hitTestFirstPosition + hitTestLines.getItemCount(), itemSize)) {
+				return;
+			}
+			hitTestLines.append(itemSize.x, itemSize.y);
+		}
+	}
+
+	private int findItemInHitTestLines(int x, int y) {
+		if (y < hitTestOffset) {
+			return RecyclerView.NO_POSITION;
+		}
+		int tableY = y - hitTestOffset;
+		extendHitTestLinesToY(tableY);
+		int line = hitTestLines.getLineAt(tableY);
+		int lineOffset = toLineOffset(x);
+		if (line < 0 || lineOffset < 0) {
+			return RecyclerView.NO_POSITION;
+		}
+		int position = hitTestLines.findItemInLine(line, lineOffset);
+		if (position < 0 || hitTestFirstPosition + position >= hitTestEndPosition
+				|| lineOffset >= hitTestLines.getItemOffset(position) + hitTestLines.getItemWidth(position)
+				|| tableY >= hitTestLines.getLineTop(line) + hitTestLines.getItemHeight(position)) {
+			return RecyclerView.NO_POSITION;
+		}
+		return hitTestFirstPosition + position;
+	}
+
+	/**
+	 * Add items from hit test lines which intersect rect, between top and bottom.
+	 */
+	private void addItemsInHitTestLines(Rect rect, int top, int bottom, PositionList outPositions) {
+		if (bottom <= Math.max(top, hitTestOffset)) {
+			return;
+		}
+		int tableTop = Math.max(top, hitTestOffset) - hitTestOffset, tableBottom = bottom - hitTestOffset;
+		extendHitTestLinesToY(tableBottom - 1);
+		int lineStartOffset = toLineOffset(rect.left), lineEndOffset = toLineOffset(rect.right - 1);
+		if (lineStartOffset > lineEndOffset) {
+			int temp = lineStartOffset;
+			lineStartOffset = lineEndOffset;
+			lineEndOffset = temp;
+		}
+		int firstLine = hitTestLines.getLineAt(tableTop);
+		if (firstLine < 0) {
+			return;
+		}
+		for (int line = firstLine; line < hitTestLines.getLineCount() && hitTestLines.getLineTop(line) < tableBottom; line ++) {
+			int position = Math.max(hitTestLines.findItemInLine(line, lineStartOffset), hitTestLines.getLineStart(line));
+			int lineEnd = Math.min(hitTestLines.getLineEnd(line), hitTestEndPosition - hitTestFirstPosition);
+			for (; position < lineEnd; position ++) {
+				int itemOffset = hitTestLines.getItemOffset(position);
+				if (itemOffset > lineEndOffset) {
+					break;
+				}
+				if (itemOffset + hitTestLines.getItemWidth(position) > lineStartOffset
+						&& hitTestLines.getLineTop(line) + hitTestLines.getItemHeight(position) > tableTop) {
+					outPositions.add(hitTestFirstPosition + position);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Last child in attached line which starts at or before line offset.
+	 * @return child index, or -1 if line offset is before first child.
+	 */
+	private int findChildInLine(int line, int lineOffset) {
+		int low = attachedLines.getFirstChildIndex(line), high = attachedLines.getLastChildIndex(line);
+		if (getChildLineOffset(getChildAt(low)) > lineOffset) {
+			return -1;
+		}
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (getChildLineOffset(getChildAt(middle)) <= lineOffset) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/*****************size warm up related functions*****************/
+
+	private void scheduleWarmUp() {
+		if (!sizeWarmUpEnabled || warmUpScheduled || recyclerView == null || warmUpIdleFrames >= WARM_UP_MAX_IDLE_FRAMES
+				|| scrollState != RecyclerView.SCROLL_STATE_IDLE || isWarmUpFinished()) {
+			return;
+		}
+		warmUpScheduled = true;
+		Choreographer.getInstance().postFrameCallback(warmUpFrameCallback);
+	}
+
+	private void cancelWarmUp() {
+		if (!warmUpScheduled) {
+			return;
+		}
+		warmUpScheduled = false;
+		Choreographer.getInstance().removeFrameCallback(warmUpFrameCallback);
+		if (recyclerView != null) {
+			recyclerView.removeCallbacks(warmUpRunnable);
+		}
+	}
+
+	private boolean isWarmUpFinished() {
+		return lineTable.matches(rightVisibleEdge() - leftVisibleEdge(), flowLayoutOptions.itemsPerLine)
+				&& lineTable.getItemCount() >= getItemCount();
+	}
+
+	/**
+	 * Measure a few items after line table end, in the time left of current frame.
+	 */
+	private void warmUpSizes() {
+		warmUpScheduled = false;
+		// layout or scroll state change will schedule again, pending adapter updates bring a layout.
+		if (!sizeWarmUpEnabled || recyclerRef == null || recyclerView == null || recyclerView.isLayoutRequested()
+				|| recyclerView.hasPendingAdapterUpdates() || scrollState != RecyclerView.SCROLL_STATE_IDLE
+				|| getChildCount() == 0) {
+			return;
+		}
+		long deadline = warmUpFrameTimeNanos + frameIntervalNanos() - WARM_UP_FRAME_MARGIN_NANOS;
+		int warmed = 0, itemCount = lineTable.getItemCount();
+		while (warmed < WARM_UP_MAX_ITEMS_PER_FRAME && lineTable.getItemCount() < getItemCount()) {
+			long start = System.nanoTime();
+			if (start + warmUpItemCostNanos > deadline) {
+				if (warmed == 0 && start < deadline) {
+					// estimate may stay above frame budget after one slow item, let it come down.
+					warmUpItemCostNanos /= 2;
+				}
+				break;
+			}
+			int position = lineTable.getItemCount();
+			boolean sizeKnown = itemSizeCache.hasSize(position);
+			extendLineTable(position, recyclerRef);
+			if (!sizeKnown) {
+				warmed ++;
+				warmedItemCount ++;
+				warmUpItemCostNanos = (warmUpItemCostNanos * 3 + System.nanoTime() - start) / 4;
+			}
+		}
+		warmUpIdleFrames = lineTable.getItemCount() > itemCount ? 0 : warmUpIdleFrames + 1;
+		scheduleWarmUp();
+	}
+
+	private long frameIntervalNanos() {
+		float refreshRate = 60;
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && recyclerView.getDisplay() != null
+				&& recyclerView.getDisplay().getRefreshRate() >= 30) {
+			refreshRate = recyclerView.getDisplay().getRefreshRate();
+		}
+		return (long) (1000000000 / refreshRate);
+	}
+
+	/*****************item size related functions*****************/
+
+	/**
+	 * Measure child view, and keep its size for later walks over the data set.
+	 */
+	private void measureChild(View child) {
+		measureChildWithMargins(child, 0, 0);
+		if (inPreLayout) {
+			return;
+		}
+		int position = getChildLayoutPosition(child);
+		int width = getDecoratedMeasuredWidth(child);
+		int height = getDecoratedMeasuredHeight(child);
+		if (measurerVerificationEnabled && itemMeasurer != null) {
+			verifyItemMeasurer(position, width, height);
+		}
+		recordItemSize(position, width, height);
+	}
+
+	/**
+	 * Decorated size of item. From size cache or item measurer when possible, otherwise by binding and measuring its view.
+	 */
+	private void getItemSize(int adapterPosition, RecyclerView.Recycler recycler, Point outSize) {
+		if (peekItemSize(adapterPosition, outSize)) {
+			return;
+		}
+		View child = recycler.getViewForPosition(adapterPosition);
+		measureChild(child);
+		outSize.x = getDecoratedMeasuredWidth(child);
+		outSize.y = getDecoratedMeasuredHeight(child);
+		recycler.recycleView(child);
+	}
+
+	/**
+	 * Decorated size of item without creating view.
+	 * @return false if size is unknown.
+	 */
+	private boolean peekItemSize(int adapterPosition, Point outSize) {
+		if (inPreLayout) {
+			return false;
+		}
+		if (itemSizeCache.hasSize(adapterPosition)) {
+			outSize.x = itemSizeCache.getWidth(adapterPosition);
+			outSize.y = itemSizeCache.getHeight(adapterPosition);
+			return true;
+		}
+		if (itemMeasurer != null && itemMeasurer.measureItem(adapterPosition, outSize)) {
+			recordItemSize(adapterPosition, outSize.x, outSize.y);
+			return true;
+		}
+		return false;
+	}
+
+	private void recordItemSize(int adapterPosition, int width, int height) {
+		if (adapterPosition < 0) {
+			return;
+		}
+		if (itemSizeCache.hasSize(adapterPosition)
+				&& itemSizeCache.getWidth(adapterPosition) == width && itemSizeCache.getHeight(adapterPosition) == height) {
+			return;
+		}
+		itemSizeCache.put(adapterPosition, width, height);
+		// line breaks from here on may change.
+		lineTable.truncate(adapterPosition);
+		if (traceRecorder != null) {
+			traceRecorder.recordItemSize(adapterPosition, width, height);
+		}
+	}
+
+	private void verifyItemMeasurer(int adapterPosition, int width, int height) {
+		Point estimated = new Point();
+		if (!itemMeasurer.measureItem(adapterPosition, estimated)) {
+			return;
+		}
+		if (estimated.x == width && estimated.y == height) {
+			return;
+		}
+		measureMismatchCount ++;
+		if (measureMismatchListener != null) {
+			measureMismatchListener.onMeasureMismatch(adapterPosition, estimated.x, estimated.y, width, height);
+		} else {
+			Log.w(LOG_TAG, "Item measurer mismatch at position " + adapterPosition + ", estimated "
+					+ estimated.x + "x" + estimated.y + ", measured " + width + "x" + height);
+		}
+	}
+
+	/**
+	 * Match parent items change size with width, forget sizes measured with another content width.
+	 */
+	private void validateItemSizes(int contentWidth) {
+		if (contentWidth != layoutContentWidth) {
+			itemSizeCache.clear();
+			layoutContentWidth = contentWidth;
+		}
+	}
+
+	/**
+	 * Extend line table to cover position, if line table is built with different width or item limit,
+	 * rebuild from beginning.
+	 * @param recycler used to measure items whose size is unknown, pass null to only use known sizes.
+	 * @return true if line table covers position.
+	 */
+	private boolean extendLineTable(int toPosition, RecyclerView.Recycler recycler) {
+		if (inPreLayout) {
+			return false;
+		}
+		int contentWidth = rightVisibleEdge() - leftVisibleEdge();
+		validateItemSizes(contentWidth);
+		if (!lineTable.matches(contentWidth, flowLayoutOptions.itemsPerLine)) {
+			lineTable.reset(contentWidth, flowLayoutOptions.itemsPerLine);
+		}
+		toPosition = Math.min(toPosition, getItemCount() - 1);
+		Point itemSize = new Point();
+		while (lineTable.getItemCount() <= toPosition) {
+			int position = lineTable.getItemCount();
+			if (!peekItemSize(position, itemSize)) {
+				if (recycler == null) {
+					return false;
+				}
+				getItemSize(position, recycler, itemSize);
+			}
+			lineTable.append(itemSize.x, itemSize.y);
+		}
+		return true;
+	}
+
+	/*****************alignment related functions*****************/
+
+	/**
+	 * Distance of x from line start edge, items in a line have increasing line offset for both alignments.
+	 */
+	private int toLineOffset(int x) {
+		switch (flowLayoutOptions.alignment) {
+			case RIGHT:
+				return rightVisibleEdge() - 1 - x;
+			case LEFT:
+			default:
+				return x - leftVisibleEdge();
+		}
+	}
+
+	private int getChildLineOffset(View child) {
+		switch (flowLayoutOptions.alignment) {
+			case RIGHT:
+				return rightVisibleEdge() - getDecoratedRight(child);
+			case LEFT:
+			default:
+				return getDecoratedLeft(child) - leftVisibleEdge();
+		}
+	}
+
+	/**
+	 * Rect of item in line table, with its line top at given y. RIGHT alignment is the mirror of LEFT.
+	 */
+	private void calcItemRectFromTable(int adapterPosition, int lineTop, Rect rect) {
+		int offset = lineTable.getItemOffset(adapterPosition);
+		int width = lineTable.getItemWidth(adapterPosition);
+		switch (flowLayoutOptions.alignment) {
+			case RIGHT:
+				rect.right = rightVisibleEdge() - offset;
+				rect.left = rect.right - width;
+				break;
+			case LEFT:
+			default:
+				rect.left = leftVisibleEdge() + offset;
+				rect.right = rect.left + width;
+				break;
+		}
+		rect.top = lineTop;
+		rect.bottom = lineTop + lineTable.getItemHeight(adapterPosition);
+	}
+
+	private boolean calcChildLayoutRect(View child, int x, int y, int lineHeight, Rect rect) {
+		return calcChildLayoutRect(child, x, y, lineHeight, LayoutContext.fromLayoutOptions(flowLayoutOptions), rect);
+	}
+	private boolean calcChildLayoutRect(View child, int x, int y, int lineHeight, LayoutContext layoutContext, Rect rect) {
+		measureChild(child);
+		return calcChildLayoutRect(getDecoratedMeasuredWidth(child), getDecoratedMeasuredHeight(child), x, y, lineHeight, layoutContext, rect);
+	}
+	private boolean calcChildLayoutRect(int childWidth, int childHeight, int x, int y, int lineHeight, LayoutContext layoutContext, Rect rect) {
+		boolean newLine;
 		switch (layoutContext.layoutOptions.alignment) {
 			case RIGHT:
 				if (shouldStartNewline(x, childWidth, layoutContext)) {
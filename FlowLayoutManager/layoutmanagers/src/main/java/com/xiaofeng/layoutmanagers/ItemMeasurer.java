@@ -0,0 +1,16 @@
+package com.xiaofeng.layoutmanagers;
+
+import android.graphics.Point;
+
+/**
+ * Computes item size without creating a view. Set to {@link FlowLayoutManager#setItemMeasurer(ItemMeasurer)}
+ * to skip binding and measuring items which only need to be stepped over, e.g. when adding line at top.
+ */
+public interface ItemMeasurer {
+	/**
+	 * Measure item at adapter position.
+	 * @param outSize decorated size of item, the same as getDecoratedMeasuredWidth/Height after measure.
+	 * @return false if size can not be computed for this item, layout manager will measure the view instead.
+	 */
+	boolean measureItem(int adapterPosition, Point outSize);
+}
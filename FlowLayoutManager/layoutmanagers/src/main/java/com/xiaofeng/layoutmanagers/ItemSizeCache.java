@@ -0,0 +1,113 @@
+package com.xiaofeng.layoutmanagers;
+
+import java.util.Arrays;
+
+/**
+ * Decorated item sizes by adapter position, kept in primitive arrays. Follows adapter notifications so
+ * known sizes survive inserts/removes. Plain java on purpose, so it can be used outside of android.
+ */
+class ItemSizeCache {
+	private static final int UNKNOWN = -1;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private int[] widths = new int[0];
+	private int[] heights = new int[0];
+	private int knownCount = 0;
+
+	boolean hasSize(int position) {
+		return position >= 0 && position < widths.length && widths[position] != UNKNOWN;
+	}
+
+	int getWidth(int position) {
+		return widths[position];
+	}
+
+	int getHeight(int position) {
+		return heights[position];
+	}
+
+	/**
+	 * Number of positions that have a known size.
+	 */
+	int getKnownCount() {
+		return knownCount;
+	}
+
+	void put(int position, int width, int height) {
+		ensureCapacity(position + 1);
+		if (widths[position] == UNKNOWN) {
+			knownCount ++;
+		}
+		widths[position] = width;
+		heights[position] = height;
+	}
+
+	void invalidate(int position, int count) {
+		int end = Math.min(position + count, widths.length);
+		for (int i = Math.max(position, 0); i < end; i ++) {
+			if (widths[i] != UNKNOWN) {
+				widths[i] = UNKNOWN;
+				knownCount --;
+			}
+		}
+	}
+
+	void onItemsAdded(int position, int count) {
+		if (position >= widths.length) {
+			return;
+		}
+		int tail = widths.length - position;
+		ensureCapacity(widths.length + count);
+		System.arraycopy(widths, position, widths, position + count, tail);
+		System.arraycopy(heights, position, heights, position + count, tail);
+		Arrays.fill(widths, position, position + count, UNKNOWN);
+		Arrays.fill(heights, position, position + count, UNKNOWN);
+	}
+
+	void onItemsRemoved(int position, int count) {
+		if (position >= widths.length) {
+			return;
+		}
+		int end = Math.min(position + count, widths.length);
+		invalidate(position, end - position);
+		System.arraycopy(widths, end, widths, position, widths.length - end);
+		System.arraycopy(heights, end, heights, position, heights.length - end);
+		Arrays.fill(widths, widths.length - (end - position), widths.length, UNKNOWN);
+		Arrays.fill(heights, heights.length - (end - position), heights.length, UNKNOWN);
+	}
+
+	void onItemsMoved(int from, int to, int count) {
+		// sizes travel with their items, cheap enough to do as remove + add.
+		int[] movedWidths = new int[count];
+		int[] movedHeights = new int[count];
+		for (int i = 0; i < count; i ++) {
+			movedWidths[i] = hasSize(from + i) ? widths[from + i] : UNKNOWN;
+			movedHeights[i] = hasSize(from + i) ? heights[from + i] : UNKNOWN;
+		}
+		onItemsRemoved(from, count);
+		onItemsAdded(to, count);
+		for (int i = 0; i < count; i ++) {
+			if (movedWidths[i] != UNKNOWN) {
+				put(to + i, movedWidths[i], movedHeights[i]);
+			}
+		}
+	}
+
+	void clear() {
+		Arrays.fill(widths, UNKNOWN);
+		Arrays.fill(heights, UNKNOWN);
+		knownCount = 0;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= widths.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, Math.max(INITIAL_CAPACITY, widths.length * 2));
+		int oldCapacity = widths.length;
+		widths = Arrays.copyOf(widths, newCapacity);
+		heights = Arrays.copyOf(heights, newCapacity);
+		Arrays.fill(widths, oldCapacity, newCapacity, UNKNOWN);
+		Arrays.fill(heights, oldCapacity, newCapacity, UNKNOWN);
+	}
+}
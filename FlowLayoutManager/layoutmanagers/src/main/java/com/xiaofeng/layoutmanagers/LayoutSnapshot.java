@@ -0,0 +1,183 @@
+package com.xiaofeng.layoutmanagers;
+
+/**
+ * Immutable copy of layout state, published by {@link FlowLayoutManager} after each layout and scroll
+ * when enabled, safe to read from any thread. Holds rects of attached children, in RecyclerView coordinates,
+ * and line structure of data set from its beginning, as far as item sizes are known.
+ *
+ * Line data is kept in chunks, chunks which did not change are shared with previous snapshot.
+ */
+public final class LayoutSnapshot {
+	private static final int CHUNK_SHIFT = 6;
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+	private final long version;
+	private final int width;
+	private final int height;
+
+	private final int[] childPositions;
+	// left, top, right, bottom of each child
+	private final int[] childRects;
+
+	private final int lineCount;
+	private final int lineItemCount;
+	private final int[][] lineStarts;
+	private final int[][] lineTops;
+	private final int[][] lineHeights;
+	private final boolean lineOffsetKnown;
+	private final int lineOffset;
+
+	private LayoutSnapshot(long version, int width, int height, int[] childPositions, int[] childRects,
+						   int lineCount, int lineItemCount, int[][] lineStarts, int[][] lineTops, int[][] lineHeights,
+						   boolean lineOffsetKnown, int lineOffset) {
+		this.version = version;
+		this.width = width;
+		this.height = height;
+		this.childPositions = childPositions;
+		this.childRects = childRects;
+		this.lineCount = lineCount;
+		this.lineItemCount = lineItemCount;
+		this.lineStarts = lineStarts;
+		this.lineTops = lineTops;
+		this.lineHeights = lineHeights;
+		this.lineOffsetKnown = lineOffsetKnown;
+		this.lineOffset = lineOffset;
+	}
+
+	/**
+	 * @param firstChangedLine lines before it are the same as in previous snapshot.
+	 */
+	static LayoutSnapshot create(LayoutSnapshot previous, long version, int width, int height,
+								 int[] childPositions, int[] childRects, LineTable lineTable, int firstChangedLine,
+								 boolean lineOffsetKnown, int lineOffset) {
+		int lineCount = lineTable.getLineCount();
+		int chunkCount = (lineCount + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+		int[][] lineStarts = new int[chunkCount][];
+		int[][] lineTops = new int[chunkCount][];
+		int[][] lineHeights = new int[chunkCount][];
+		for (int chunk = 0; chunk < chunkCount; chunk ++) {
+			int chunkStart = chunk << CHUNK_SHIFT;
+			int chunkEnd = Math.min(chunkStart + CHUNK_SIZE, lineCount);
+			boolean unchanged = previous != null && chunkEnd <= firstChangedLine
+					&& chunkEnd - chunkStart == CHUNK_SIZE && previous.lineCount >= chunkEnd;
+			if (unchanged) {
+				lineStarts[chunk] = previous.lineStarts[chunk];
+				lineTops[chunk] = previous.lineTops[chunk];
+				lineHeights[chunk] = previous.lineHeights[chunk];
+				continue;
+			}
+			int[] starts = new int[chunkEnd - chunkStart];
+			int[] tops = new int[chunkEnd - chunkStart];
+			int[] heights = new int[chunkEnd - chunkStart];
+			for (int line = chunkStart; line < chunkEnd; line ++) {
+				starts[line - chunkStart] = lineTable.getLineStart(line);
+				tops[line - chunkStart] = lineTable.getLineTop(line);
+				heights[line - chunkStart] = lineTable.getLineHeight(line);
+			}
+			lineStarts[chunk] = starts;
+			lineTops[chunk] = tops;
+			lineHeights[chunk] = heights;
+		}
+		return new LayoutSnapshot(version, width, height, childPositions, childRects, lineCount,
+				lineTable.getItemCount(), lineStarts, lineTops, lineHeights, lineOffsetKnown, lineOffset);
+	}
+
+	/**
+	 * Increases with every published snapshot.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getChildCount() {
+		return childPositions.length;
+	}
+
+	public int getChildPosition(int index) {
+		return childPositions[index];
+	}
+
+	public int getChildLeft(int index) {
+		return childRects[index * 4];
+	}
+
+	public int getChildTop(int index) {
+		return childRects[index * 4 + 1];
+	}
+
+	public int getChildRight(int index) {
+		return childRects[index * 4 + 2];
+	}
+
+	public int getChildBottom(int index) {
+		return childRects[index * 4 + 3];
+	}
+
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * Number of items covered by lines.
+	 */
+	public int getLineItemCount() {
+		return lineItemCount;
+	}
+
+	public int getLineStart(int line) {
+		return lineStarts[line >> CHUNK_SHIFT][line & (CHUNK_SIZE - 1)];
+	}
+
+	/**
+	 * @return line top relative to top of first line.
+	 */
+	public int getLineTop(int line) {
+		return lineTops[line >> CHUNK_SHIFT][line & (CHUNK_SIZE - 1)];
+	}
+
+	public int getLineHeight(int line) {
+		return lineHeights[line >> CHUNK_SHIFT][line & (CHUNK_SIZE - 1)];
+	}
+
+	/**
+	 * @return line contains adapter position, or -1 if position is not covered.
+	 */
+	public int getLineForPosition(int adapterPosition) {
+		if (adapterPosition < 0 || adapterPosition >= lineItemCount) {
+			return -1;
+		}
+		int low = 0, high = lineCount - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (getLineStart(middle) <= adapterPosition) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Whether attached lines are lined up with line structure, so line tops can be converted to
+	 * RecyclerView coordinates with {@link #getLineOffset()}.
+	 */
+	public boolean isLineOffsetKnown() {
+		return lineOffsetKnown;
+	}
+
+	/**
+	 * @return y of first line top in RecyclerView coordinates, may be far above the screen.
+	 */
+	public int getLineOffset() {
+		return lineOffset;
+	}
+}
@@ -0,0 +1,216 @@
+package com.xiaofeng.layoutmanagers;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records scroll, adapter notifications and item sizes seen by {@link FlowLayoutManager} into a compact
+ * binary trace, to be replayed by {@link LayoutTraceReplayer}. Every record is one op byte followed by
+ * zigzag var ints. Writing errors stop recording silently, check {@link #getError()}.
+ */
+public class LayoutTraceRecorder {
+	static final int MAGIC = 0x464c4d54; // "FLMT"
+	static final int VERSION = 2;
+
+	static final int OP_VIEWPORT = 1;
+	static final int OP_OPTIONS = 2;
+	static final int OP_ITEM_COUNT = 3;
+	static final int OP_ITEM_SIZE = 4;
+	static final int OP_SCROLL_BY = 5;
+	static final int OP_SCROLL_TO = 6;
+	static final int OP_SMOOTH_SCROLL_TO = 7;
+	static final int OP_ITEMS_ADDED = 8;
+	static final int OP_ITEMS_REMOVED = 9;
+	static final int OP_ITEMS_UPDATED = 10;
+	static final int OP_ITEMS_MOVED = 11;
+	static final int OP_ITEMS_CHANGED = 12;
+	static final int OP_ANCHOR = 13;
+	static final int OP_LAYOUT = 14;
+	static final int OP_LAYOUT_PASS = 15;
+
+	static final int ALIGNMENT_LEFT = 0;
+	static final int ALIGNMENT_RIGHT = 1;
+
+	private final DataOutputStream out;
+	private IOException error;
+	private boolean closed = false;
+
+	// last written values, so unchanged state is not written again.
+	private int width = -1, height = -1, paddingLeft = -1, paddingTop = -1, paddingRight = -1, paddingBottom = -1;
+	private int alignment = -1, itemsPerLine = -1, stackFromEnd = -1, itemCount = -1;
+
+	public LayoutTraceRecorder(OutputStream outputStream) {
+		out = new DataOutputStream(new BufferedOutputStream(outputStream));
+		try {
+			out.writeInt(MAGIC);
+			writeVarInt(VERSION);
+		} catch (IOException e) {
+			error = e;
+		}
+	}
+
+	public boolean isRecording() {
+		return !closed && error == null;
+	}
+
+	public IOException getError() {
+		return error;
+	}
+
+	void recordViewport(int width, int height, int paddingLeft, int paddingTop, int paddingRight, int paddingBottom) {
+		if (width == this.width && height == this.height && paddingLeft == this.paddingLeft && paddingTop == this.paddingTop
+				&& paddingRight == this.paddingRight && paddingBottom == this.paddingBottom) {
+			return;
+		}
+		this.width = width;
+		this.height = height;
+		this.paddingLeft = paddingLeft;
+		this.paddingTop = paddingTop;
+		this.paddingRight = paddingRight;
+		this.paddingBottom = paddingBottom;
+		write(OP_VIEWPORT, width, height, paddingLeft, paddingTop, paddingRight, paddingBottom);
+	}
+
+	void recordOptions(int alignment, int itemsPerLine, boolean stackFromEnd) {
+		int stackFromEndValue = stackFromEnd ? 1 : 0;
+		if (alignment == this.alignment && itemsPerLine == this.itemsPerLine && stackFromEndValue == this.stackFromEnd) {
+			return;
+		}
+		this.alignment = alignment;
+		this.itemsPerLine = itemsPerLine;
+		this.stackFromEnd = stackFromEndValue;
+		write(OP_OPTIONS, alignment, itemsPerLine, stackFromEndValue);
+	}
+
+	void recordItemCount(int itemCount) {
+		if (itemCount == this.itemCount) {
+			return;
+		}
+		this.itemCount = itemCount;
+		write(OP_ITEM_COUNT, itemCount);
+	}
+
+	void recordItemSize(int adapterPosition, int width, int height) {
+		write(OP_ITEM_SIZE, adapterPosition, width, height);
+	}
+
+	void recordScrollBy(int dy, int consumed) {
+		write(OP_SCROLL_BY, dy, consumed);
+	}
+
+	void recordScrollTo(int adapterPosition) {
+		write(OP_SCROLL_TO, adapterPosition);
+	}
+
+	void recordSmoothScrollTo(int adapterPosition) {
+		write(OP_SMOOTH_SCROLL_TO, adapterPosition);
+	}
+
+	/**
+	 * First attached item and its distance to top edge, written when recording starts.
+	 */
+	void recordAnchor(int adapterPosition, int offset) {
+		write(OP_ANCHOR, adapterPosition, offset);
+	}
+
+	/**
+	 * First attached item and its distance to top edge after a real layout pass.
+	 * @param adapterPosition -1 if nothing is attached.
+	 */
+	void recordLayoutPass(int adapterPosition, int offset) {
+		write(OP_LAYOUT_PASS, adapterPosition, offset);
+	}
+
+	void recordItemsAdded(int positionStart, int count) {
+		// item count is changed by notification, keep track without writing it again.
+		if (itemCount >= 0) {
+			itemCount += count;
+		}
+		write(OP_ITEMS_ADDED, positionStart, count);
+	}
+
+	void recordItemsRemoved(int positionStart, int count) {
+		if (itemCount >= 0) {
+			itemCount -= count;
+		}
+		write(OP_ITEMS_REMOVED, positionStart, count);
+	}
+
+	void recordItemsUpdated(int positionStart, int count) {
+		write(OP_ITEMS_UPDATED, positionStart, count);
+	}
+
+	void recordItemsMoved(int from, int to, int count) {
+		write(OP_ITEMS_MOVED, from, to, count);
+	}
+
+	void recordItemsChanged() {
+		itemCount = -1;
+		write(OP_ITEMS_CHANGED);
+	}
+
+	/**
+	 * Write attached children as final layout and close the trace.
+	 * @param positions adapter positions of children.
+	 * @param rects left, top, right, bottom of each child.
+	 */
+	void finish(int[] positions, int[] rects, int childCount) {
+		if (!isRecording()) {
+			closeQuietly();
+			return;
+		}
+		try {
+			out.writeByte(OP_LAYOUT);
+			writeVarInt(childCount);
+			for (int i = 0; i < childCount; i ++) {
+				writeVarInt(positions[i]);
+				for (int j = 0; j < 4; j ++) {
+					writeVarInt(rects[i * 4 + j]);
+				}
+			}
+			out.flush();
+		} catch (IOException e) {
+			error = e;
+		}
+		closeQuietly();
+	}
+
+	private void closeQuietly() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			out.close();
+		} catch (IOException e) {
+			if (error == null) {
+				error = e;
+			}
+		}
+	}
+
+	private void write(int op, int... values) {
+		if (!isRecording()) {
+			return;
+		}
+		try {
+			out.writeByte(op);
+			for (int value : values) {
+				writeVarInt(value);
+			}
+		} catch (IOException e) {
+			error = e;
+		}
+	}
+
+	private void writeVarInt(int value) throws IOException {
+		int zigzag = (value << 1) ^ (value >> 31);
+		while ((zigzag & ~0x7f) != 0) {
+			out.writeByte((zigzag & 0x7f) | 0x80);
+			zigzag >>>= 7;
+		}
+		out.writeByte(zigzag);
+	}
+}
@@ -0,0 +1,574 @@
+package com.xiaofeng.layoutmanagers;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Replays a trace written by {@link LayoutTraceRecorder} on plain jvm, and reports time and work spent for
+ * each kind of record. Attached lines are modeled the way the layout manager keeps them: lines added at
+ * bottom start right after last attached item, lines added at top come from line table of the whole data
+ * set, and each recorded layout pass puts first attached item where the layout manager put it. Scrolls are
+ * replayed against this model, and the recorded result is followed afterwards, so one divergence does not
+ * hide everything after it.
+ *
+ * Timings are of the model on jvm, views are not involved. View work of the layout manager shows up as
+ * counts instead: lines added and recycled, and items bound into attached lines.
+ *
+ * Usage: java -cp classes com.xiaofeng.layoutmanagers.LayoutTraceReplayer trace-file [--compare]
+ */
+public class LayoutTraceReplayer {
+	private static final String[] OP_NAMES = {
+			"", "viewport", "options", "item count", "item size", "scroll by", "scroll to", "smooth scroll to",
+			"items added", "items removed", "items updated", "items moved", "items changed", "anchor", "layout",
+			"layout pass"
+	};
+	private static final int NO_POSITION = -1;
+
+	public static class Report {
+		public final long[] opCounts = new long[OP_NAMES.length];
+		public final long[] opNanos = new long[OP_NAMES.length];
+		public final long[] opMaxNanos = new long[OP_NAMES.length];
+		// items appended to line table, i.e. line breaking work.
+		public long itemsLaidOut;
+		public long lineTableRebuilds;
+		public long lineTableTruncations;
+		public long linesAddedAtTop;
+		public long linesAddedAtBottom;
+		public long linesRecycled;
+		// items in attached lines created by scrolls and layout passes, each one bound and measured by layout manager.
+		public long itemsBound;
+		// records that could not be replayed because some item size was never recorded.
+		public long unresolved;
+		public long scrollDivergences;
+		// layout passes which did not put first item where scroll to position or stack from end would.
+		public long anchorDivergences;
+		public boolean layoutCompared;
+		public int layoutChildren;
+		public int layoutMismatches;
+		public int layoutVerticalDrift;
+		public int layoutMaxDelta;
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			long totalNanos = 0;
+			builder.append(String.format(Locale.US, "%-18s %10s %12s %12s%n", "record", "count", "total(us)", "max(us)"));
+			for (int op = 1; op < OP_NAMES.length; op ++) {
+				if (opCounts[op] == 0) {
+					continue;
+				}
+				totalNanos += opNanos[op];
+				builder.append(String.format(Locale.US, "%-18s %10d %12d %12d%n", OP_NAMES[op], opCounts[op],
+						opNanos[op] / 1000, opMaxNanos[op] / 1000));
+			}
+			builder.append(String.format(Locale.US, "total %dus%n", totalNanos / 1000));
+			builder.append(String.format(Locale.US, "items laid out %d, line table rebuilds %d, truncations %d%n",
+					itemsLaidOut, lineTableRebuilds, lineTableTruncations));
+			builder.append(String.format(Locale.US, "lines added at top %d, at bottom %d, recycled %d, items bound %d%n",
+					linesAddedAtTop, linesAddedAtBottom, linesRecycled, itemsBound));
+			builder.append(String.format(Locale.US, "unresolved records %d, scroll divergences %d, anchor divergences %d%n",
+					unresolved, scrollDivergences, anchorDivergences));
+			if (layoutCompared) {
+				builder.append(String.format(Locale.US, "final layout: %d children, %d mismatches, vertical drift %dpx, max delta %dpx%n",
+						layoutChildren, layoutMismatches, layoutVerticalDrift, layoutMaxDelta));
+			}
+			return builder.toString();
+		}
+	}
+
+	/**
+	 * Attached lines of the model, top to bottom, tops in RecyclerView coordinates.
+	 */
+	private static class ModelLines {
+		int[] starts = new int[16];
+		// position after last item of line.
+		int[] ends = new int[16];
+		int[] tops = new int[16];
+		int[] heights = new int[16];
+		int count = 0;
+
+		void clear() {
+			count = 0;
+		}
+
+		void add(int line, int start, int end, int top, int height) {
+			if (count == starts.length) {
+				int newCapacity = count * 2;
+				starts = Arrays.copyOf(starts, newCapacity);
+				ends = Arrays.copyOf(ends, newCapacity);
+				tops = Arrays.copyOf(tops, newCapacity);
+				heights = Arrays.copyOf(heights, newCapacity);
+			}
+			move(line, line + 1, count - line);
+			starts[line] = start;
+			ends[line] = end;
+			tops[line] = top;
+			heights[line] = height;
+			count ++;
+		}
+
+		void remove(int line) {
+			move(line + 1, line, count - line - 1);
+			count --;
+		}
+
+		void offset(int dy) {
+			for (int line = 0; line < count; line ++) {
+				tops[line] += dy;
+			}
+		}
+
+		int bottom(int line) {
+			return tops[line] + heights[line];
+		}
+
+		private void move(int from, int to, int length) {
+			System.arraycopy(starts, from, starts, to, length);
+			System.arraycopy(ends, from, ends, to, length);
+			System.arraycopy(tops, from, tops, to, length);
+			System.arraycopy(heights, from, heights, to, length);
+		}
+	}
+
+	private final boolean compareLayout;
+	private final ItemSizeCache itemSizeCache = new ItemSizeCache();
+	private final LineTable lineTable = new LineTable(0, 0);
+	private final ModelLines lines = new ModelLines();
+	private Report report;
+	private int traceVersion;
+
+	private int width, height, paddingLeft, paddingTop, paddingRight, paddingBottom;
+	private int alignment = LayoutTraceRecorder.ALIGNMENT_LEFT;
+	private int itemsPerLine = 0;
+	private boolean stackFromEnd = false;
+	private int itemCount = 0;
+	// false once a line could not be built for unknown size, until next layout pass.
+	private boolean linesValid = false;
+	private boolean anchoredToEnd = true;
+	private int pendingScrollPosition = NO_POSITION;
+
+	public LayoutTraceReplayer(boolean compareLayout) {
+		this.compareLayout = compareLayout;
+	}
+
+	public Report replay(InputStream inputStream) throws IOException {
+		report = new Report();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+		if (in.readInt() != LayoutTraceRecorder.MAGIC) {
+			throw new IOException("Not a layout trace");
+		}
+		traceVersion = readVarInt(in);
+		if (traceVersion < 1 || traceVersion > LayoutTraceRecorder.VERSION) {
+			throw new IOException("Unsupported trace version " + traceVersion);
+		}
+		int op;
+		while ((op = in.read()) != -1) {
+			if (op <= 0 || op >= OP_NAMES.length) {
+				throw new IOException("Unknown record " + op);
+			}
+			long start = System.nanoTime();
+			replayRecord(op, in);
+			long elapsed = System.nanoTime() - start;
+			report.opCounts[op] ++;
+			report.opNanos[op] += elapsed;
+			report.opMaxNanos[op] = Math.max(report.opMaxNanos[op], elapsed);
+		}
+		return report;
+	}
+
+	private void replayRecord(int op, DataInputStream in) throws IOException {
+		switch (op) {
+			case LayoutTraceRecorder.OP_VIEWPORT:
+				width = readVarInt(in);
+				height = readVarInt(in);
+				paddingLeft = readVarInt(in);
+				paddingTop = readVarInt(in);
+				paddingRight = readVarInt(in);
+				paddingBottom = readVarInt(in);
+				break;
+			case LayoutTraceRecorder.OP_OPTIONS:
+				alignment = readVarInt(in);
+				itemsPerLine = readVarInt(in);
+				if (traceVersion >= 2) {
+					stackFromEnd = readVarInt(in) != 0;
+				}
+				break;
+			case LayoutTraceRecorder.OP_ITEM_COUNT:
+				itemCount = readVarInt(in);
+				truncate(itemCount);
+				break;
+			case LayoutTraceRecorder.OP_ITEM_SIZE: {
+				int position = readVarInt(in);
+				int itemWidth = readVarInt(in);
+				int itemHeight = readVarInt(in);
+				itemSizeCache.put(position, itemWidth, itemHeight);
+				truncate(position);
+				break;
+			}
+			case LayoutTraceRecorder.OP_SCROLL_BY:
+				replayScrollBy(readVarInt(in), readVarInt(in));
+				break;
+			case LayoutTraceRecorder.OP_SCROLL_TO: {
+				// layout manager lays out from target in next layout pass, target starts a new line at top edge.
+				pendingScrollPosition = readVarInt(in);
+				resetLines(pendingScrollPosition, 0);
+				break;
+			}
+			case LayoutTraceRecorder.OP_SMOOTH_SCROLL_TO:
+				// actual scrolling comes as scroll by records, only the target lookup is replayed here.
+				if (!extendLineTable(readVarInt(in))) {
+					report.unresolved ++;
+				}
+				break;
+			case LayoutTraceRecorder.OP_ITEMS_ADDED: {
+				int position = readVarInt(in);
+				int count = readVarInt(in);
+				itemSizeCache.onItemsAdded(position, count);
+				itemCount += count;
+				truncate(position);
+				break;
+			}
+			case LayoutTraceRecorder.OP_ITEMS_REMOVED: {
+				int position = readVarInt(in);
+				int count = readVarInt(in);
+				itemSizeCache.onItemsRemoved(position, count);
+				itemCount -= count;
+				truncate(position);
+				break;
+			}
+			case LayoutTraceRecorder.OP_ITEMS_UPDATED: {
+				int position = readVarInt(in);
+				itemSizeCache.invalidate(position, readVarInt(in));
+				truncate(position);
+				break;
+			}
+			case LayoutTraceRecorder.OP_ITEMS_MOVED: {
+				int from = readVarInt(in);
+				int to = readVarInt(in);
+				itemSizeCache.onItemsMoved(from, to, readVarInt(in));
+				truncate(Math.min(from, to));
+				break;
+			}
+			case LayoutTraceRecorder.OP_ITEMS_CHANGED:
+				itemSizeCache.clear();
+				truncate(0);
+				break;
+			case LayoutTraceRecorder.OP_ANCHOR:
+				resetLines(readVarInt(in), readVarInt(in));
+				break;
+			case LayoutTraceRecorder.OP_LAYOUT:
+				replayLayout(in);
+				break;
+			case LayoutTraceRecorder.OP_LAYOUT_PASS:
+				replayLayoutPass(readVarInt(in), readVarInt(in));
+				break;
+		}
+	}
+
+	private void replayLayoutPass(int position, int offset) {
+		if (pendingScrollPosition != NO_POSITION) {
+			int expectedPosition = pendingScrollPosition < itemCount ? pendingScrollPosition : NO_POSITION;
+			if (position != expectedPosition || (position != NO_POSITION && offset != 0)) {
+				report.anchorDivergences ++;
+			}
+		} else if (stackFromEnd && anchoredToEnd && itemCount > 0 && itemsPerLine == 1) {
+			// layout manager walks up from last item, measuring only items on screen.
+			int bottom = bottomEdge(), expectedPosition = itemCount;
+			while (expectedPosition > 0 && bottom > paddingTop && itemSizeCache.hasSize(expectedPosition - 1)) {
+				expectedPosition --;
+				bottom -= itemSizeCache.getHeight(expectedPosition);
+			}
+			if (expectedPosition > 0 && bottom > paddingTop) {
+				report.unresolved ++;
+			} else if (position != expectedPosition || offset != bottom - paddingTop) {
+				report.anchorDivergences ++;
+			}
+		} else if (stackFromEnd && anchoredToEnd && itemCount > 0) {
+			if (!extendLineTable(itemCount - 1)) {
+				report.unresolved ++;
+			} else {
+				int viewportHeight = bottomEdge() - paddingTop;
+				int contentBottom = lineTable.getTotalHeight();
+				int firstLine = Math.max(lineTable.getLineAt(contentBottom - viewportHeight), 0);
+				int expectedOffset = viewportHeight - (contentBottom - lineTable.getLineTop(firstLine));
+				if (position != lineTable.getLineStart(firstLine) || offset != expectedOffset) {
+					report.anchorDivergences ++;
+				}
+			}
+		}
+		pendingScrollPosition = NO_POSITION;
+		resetLines(position, offset);
+	}
+
+	/**
+	 * Lay out lines from position at offset to top edge, until bottom edge.
+	 */
+	private void resetLines(int position, int offset) {
+		prepareLineTable();
+		lines.clear();
+		linesValid = true;
+		if (position >= 0 && position < itemCount) {
+			int top = paddingTop + offset;
+			if (!addLineAtBottom(position, top)) {
+				return;
+			}
+			while (lines.ends[lines.count - 1] < itemCount && lines.bottom(lines.count - 1) < bottomEdge()) {
+				if (!addLineAtBottom(lines.ends[lines.count - 1], lines.bottom(lines.count - 1))) {
+					return;
+				}
+			}
+		}
+		updateAnchoredToEnd();
+	}
+
+	/**
+	 * Same steps as layout manager's contentMoveUp and contentMoveDown: when attached lines already cover
+	 * the scroll they are only moved, otherwise lines are added until they do, and lines out of screen are
+	 * recycled after moving.
+	 */
+	private void replayScrollBy(int dy, int recordedConsumed) {
+		if (!linesValid || lines.count == 0) {
+			report.unresolved ++;
+			lines.offset(-recordedConsumed);
+			return;
+		}
+		int consumed;
+		boolean recycle = false;
+		if (dy > 0) {
+			int offscreenBottom = lines.bottom(lines.count - 1) - bottomEdge();
+			if (offscreenBottom >= dy) {
+				consumed = dy;
+			} else {
+				recycle = true;
+				while (offscreenBottom < dy && lines.ends[lines.count - 1] < itemCount) {
+					if (!addLineAtBottom(lines.ends[lines.count - 1], lines.bottom(lines.count - 1))) {
+						break;
+					}
+					report.linesAddedAtBottom ++;
+					offscreenBottom = lines.bottom(lines.count - 1) - bottomEdge();
+				}
+				consumed = Math.min(dy, Math.max(offscreenBottom, 0));
+			}
+		} else {
+			int offscreenTop = paddingTop - lines.tops[0];
+			if (offscreenTop > -dy) {
+				consumed = dy;
+			} else {
+				recycle = true;
+				while (offscreenTop < -dy && lines.starts[0] > 0) {
+					if (!addLineAtTop()) {
+						break;
+					}
+					report.linesAddedAtTop ++;
+					offscreenTop = paddingTop - lines.tops[0];
+				}
+				consumed = Math.max(dy, -Math.max(offscreenTop, 0));
+			}
+		}
+		if (!linesValid) {
+			report.unresolved ++;
+		} else if (consumed != recordedConsumed) {
+			report.scrollDivergences ++;
+		}
+		lines.offset(-recordedConsumed);
+		if (recycle && dy > 0) {
+			while (lines.count > 0 && !lineVisible(0)) {
+				lines.remove(0);
+				report.linesRecycled ++;
+			}
+		} else if (recycle) {
+			while (lines.count > 0 && !lineVisible(lines.count - 1)) {
+				lines.remove(lines.count - 1);
+				report.linesRecycled ++;
+			}
+		}
+		updateAnchoredToEnd();
+	}
+
+	/**
+	 * New line starting at position, broken the way a layout from first child or a line added at bottom is.
+	 */
+	private boolean addLineAtBottom(int position, int top) {
+		int contentWidth = width - paddingLeft - paddingRight;
+		int end = position, lineWidth = 0, lineHeight = 0;
+		while (end < itemCount) {
+			if (!itemSizeCache.hasSize(end)) {
+				linesValid = false;
+				return false;
+			}
+			int itemWidth = itemSizeCache.getWidth(end);
+			if (end > position && ((itemsPerLine > 0 && end - position == itemsPerLine) || lineWidth + itemWidth > contentWidth)) {
+				break;
+			}
+			lineWidth += itemWidth;
+			lineHeight = Math.max(lineHeight, itemSizeCache.getHeight(end));
+			end ++;
+		}
+		lines.add(lines.count, position, end, top, lineHeight);
+		report.itemsBound += end - position;
+		return true;
+	}
+
+	/**
+	 * Line of line table which holds the item before first attached item, cut off at that item.
+	 */
+	private boolean addLineAtTop() {
+		int end = lines.starts[0], start;
+		if (itemsPerLine == 1) {
+			// line is the item itself, layout manager does not use line table for it.
+			if (!itemSizeCache.hasSize(end - 1)) {
+				linesValid = false;
+				return false;
+			}
+			start = end - 1;
+		} else {
+			if (!extendLineTable(end - 1)) {
+				linesValid = false;
+				return false;
+			}
+			start = lineTable.getLineStart(lineTable.getLineForPosition(end - 1));
+		}
+		int lineHeight = 0;
+		for (int position = start; position < end; position ++) {
+			lineHeight = Math.max(lineHeight, itemSizeCache.getHeight(position));
+		}
+		lines.add(0, start, end, lines.tops[0] - lineHeight, lineHeight);
+		report.itemsBound += end - start;
+		return true;
+	}
+
+	private boolean lineVisible(int line) {
+		return lines.tops[line] < bottomEdge() && lines.bottom(line) > paddingTop && lines.heights[line] > 0;
+	}
+
+	private void updateAnchoredToEnd() {
+		anchoredToEnd = lines.count == 0
+				|| (lines.ends[lines.count - 1] == itemCount && lines.bottom(lines.count - 1) <= bottomEdge());
+	}
+
+	private int bottomEdge() {
+		return height - paddingBottom;
+	}
+
+	private void replayLayout(DataInputStream in) throws IOException {
+		int childCount = readVarInt(in);
+		boolean driftKnown = false;
+		for (int i = 0; i < childCount; i ++) {
+			int position = readVarInt(in);
+			int left = readVarInt(in), top = readVarInt(in), right = readVarInt(in), bottom = readVarInt(in);
+			if (!compareLayout) {
+				continue;
+			}
+			report.layoutCompared = true;
+			report.layoutChildren ++;
+			int line = 0;
+			while (line < lines.count && (position < lines.starts[line] || position >= lines.ends[line])) {
+				line ++;
+			}
+			if (line == lines.count) {
+				report.unresolved ++;
+				continue;
+			}
+			int offset = 0;
+			for (int p = lines.starts[line]; p < position; p ++) {
+				offset += itemSizeCache.getWidth(p);
+			}
+			int itemWidth = itemSizeCache.getWidth(position), itemHeight = itemSizeCache.getHeight(position);
+			// items are top aligned in every line, also in lines added at top.
+			int expectedTop = lines.tops[line];
+			int expectedLeft, expectedRight;
+			if (alignment == LayoutTraceRecorder.ALIGNMENT_RIGHT) {
+				expectedRight = width - paddingRight - offset;
+				expectedLeft = expectedRight - itemWidth;
+			} else {
+				expectedLeft = paddingLeft + offset;
+				expectedRight = expectedLeft + itemWidth;
+			}
+			if (!driftKnown) {
+				// model may drift from recorded layout, compare lines relative to first child.
+				report.layoutVerticalDrift = top - expectedTop;
+				driftKnown = true;
+			}
+			expectedTop += report.layoutVerticalDrift;
+			int expectedBottom = expectedTop + itemHeight;
+			int delta = Math.max(Math.max(Math.abs(left - expectedLeft), Math.abs(right - expectedRight)),
+					Math.max(Math.abs(top - expectedTop), Math.abs(bottom - expectedBottom)));
+			if (delta > 0) {
+				report.layoutMismatches ++;
+				report.layoutMaxDelta = Math.max(report.layoutMaxDelta, delta);
+			}
+		}
+	}
+
+	private void prepareLineTable() {
+		int contentWidth = width - paddingLeft - paddingRight;
+		if (!lineTable.matches(contentWidth, itemsPerLine)) {
+			if (lineTable.getItemCount() > 0) {
+				report.lineTableRebuilds ++;
+			}
+			lineTable.reset(contentWidth, itemsPerLine);
+		}
+	}
+
+	private boolean extendLineTable(int toPosition) {
+		prepareLineTable();
+		while (lineTable.getItemCount() <= toPosition && lineTable.getItemCount() < itemCount) {
+			if (!appendNextItem()) {
+				return false;
+			}
+		}
+		return lineTable.getItemCount() > toPosition;
+	}
+
+	private boolean appendNextItem() {
+		int position = lineTable.getItemCount();
+		if (!itemSizeCache.hasSize(position)) {
+			return false;
+		}
+		lineTable.append(itemSizeCache.getWidth(position), itemSizeCache.getHeight(position));
+		report.itemsLaidOut ++;
+		return true;
+	}
+
+	private void truncate(int position) {
+		if (position < lineTable.getItemCount()) {
+			report.lineTableTruncations ++;
+			lineTable.truncate(position);
+		}
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int zigzag = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = in.read();
+			if (b == -1) {
+				throw new EOFException();
+			}
+			zigzag |= (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: LayoutTraceReplayer trace-file [--compare]");
+			System.exit(1);
+		}
+		boolean compare = args.length > 1 && "--compare".equals(args[1]);
+		InputStream in = new FileInputStream(args[0]);
+		try {
+			System.out.print(new LayoutTraceReplayer(compare).replay(in));
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,272 @@
+package com.xiaofeng.layoutmanagers;
+
+import java.util.Arrays;
+
+/**
+ * Line structure of items [0, itemCount), computed from item sizes only, with the same line breaking
+ * rules as {@link FlowLayoutManager}. Item offsets are from the line start edge, so the same table
+ * serves both LEFT and RIGHT alignment. Line tops are relative to the top of the first line.
+ * Plain java on purpose, so it can be used outside of android. Only the layout manager builds tables,
+ * others get read only copies from {@link FlowLayoutManager#computeLineTable()}.
+ */
+public class LineTable {
+	private static final int INITIAL_CAPACITY = 64;
+
+	private int contentWidth;
+	private int itemsPerLine;
+
+	private int[] lineStarts = new int[INITIAL_CAPACITY];
+	private int[] lineTops = new int[INITIAL_CAPACITY];
+	private int[] lineHeights = new int[INITIAL_CAPACITY];
+	private int lineCount = 0;
+
+	private int[] itemOffsets = new int[INITIAL_CAPACITY];
+	private int[] itemWidths = new int[INITIAL_CAPACITY];
+	private int[] itemHeights = new int[INITIAL_CAPACITY];
+	private int itemCount = 0;
+
+	// state of last line, needed to decide whether next item fits in.
+	private int currentLineWidth = 0;
+	private int currentLineItemCount = 0;
+
+	// lowest line changed since last takeFirstChangedLine(), lines before it are the same as before.
+	private int firstChangedLine = 0;
+
+	LineTable(int contentWidth, int itemsPerLine) {
+		this.contentWidth = contentWidth;
+		this.itemsPerLine = itemsPerLine;
+	}
+
+	/**
+	 * Whether this table was built with given content width and item per line limit.
+	 */
+	public boolean matches(int contentWidth, int itemsPerLine) {
+		return this.contentWidth == contentWidth && this.itemsPerLine == itemsPerLine;
+	}
+
+	void reset(int contentWidth, int itemsPerLine) {
+		this.contentWidth = contentWidth;
+		this.itemsPerLine = itemsPerLine;
+		clear();
+	}
+
+	void clear() {
+		firstChangedLine = 0;
+		lineCount = 0;
+		itemCount = 0;
+		currentLineWidth = 0;
+		currentLineItemCount = 0;
+	}
+
+	/**
+	 * Append next item.
+	 * @return true if the item starts a new line.
+	 */
+	boolean append(int width, int height) {
+		ensureItemCapacity(itemCount + 1);
+		boolean newLine = itemCount == 0 || shouldStartNewline(width);
+		if (newLine) {
+			ensureLineCapacity(lineCount + 1);
+			lineStarts[lineCount] = itemCount;
+			lineTops[lineCount] = lineCount == 0 ? 0 : lineTops[lineCount - 1] + lineHeights[lineCount - 1];
+			lineHeights[lineCount] = height;
+			markChanged(lineCount);
+			lineCount ++;
+			currentLineWidth = 0;
+			currentLineItemCount = 0;
+		} else {
+			if (height > lineHeights[lineCount - 1]) {
+				lineHeights[lineCount - 1] = height;
+				markChanged(lineCount - 1);
+			}
+		}
+		itemOffsets[itemCount] = currentLineWidth;
+		itemWidths[itemCount] = width;
+		itemHeights[itemCount] = height;
+		currentLineWidth += width;
+		currentLineItemCount ++;
+		itemCount ++;
+		return newLine;
+	}
+
+	/**
+	 * Drop items from position on, so they will be appended again. Items before position keep their lines.
+	 */
+	void truncate(int position) {
+		if (position >= itemCount) {
+			return;
+		}
+		if (position <= 0) {
+			clear();
+			return;
+		}
+		itemCount = position;
+		int lastLine = getLineForPosition(position - 1);
+		lineCount = lastLine + 1;
+		int lineStart = lineStarts[lastLine];
+		int height = 0;
+		for (int i = lineStart; i < position; i ++) {
+			height = Math.max(height, itemHeights[i]);
+		}
+		lineHeights[lastLine] = height;
+		markChanged(lastLine);
+		currentLineWidth = itemOffsets[position - 1] + itemWidths[position - 1];
+		currentLineItemCount = position - lineStart;
+	}
+
+	/**
+	 * Copy of current lines and items, not affected by later changes of this table.
+	 */
+	LineTable copy() {
+		LineTable copy = new LineTable(contentWidth, itemsPerLine);
+		copy.lineStarts = Arrays.copyOf(lineStarts, Math.max(lineCount, 1));
+		copy.lineTops = Arrays.copyOf(lineTops, Math.max(lineCount, 1));
+		copy.lineHeights = Arrays.copyOf(lineHeights, Math.max(lineCount, 1));
+		copy.lineCount = lineCount;
+		copy.itemOffsets = Arrays.copyOf(itemOffsets, Math.max(itemCount, 1));
+		copy.itemWidths = Arrays.copyOf(itemWidths, Math.max(itemCount, 1));
+		copy.itemHeights = Arrays.copyOf(itemHeights, Math.max(itemCount, 1));
+		copy.itemCount = itemCount;
+		copy.currentLineWidth = currentLineWidth;
+		copy.currentLineItemCount = currentLineItemCount;
+		return copy;
+	}
+
+	/**
+	 * @return lowest line whose start, top or height changed since last call, or
+	 * Integer.MAX_VALUE if nothing changed.
+	 */
+	int takeFirstChangedLine() {
+		int line = firstChangedLine;
+		firstChangedLine = Integer.MAX_VALUE;
+		return line;
+	}
+
+	private void markChanged(int line) {
+		firstChangedLine = Math.min(firstChangedLine, line);
+	}
+
+	private boolean shouldStartNewline(int width) {
+		if (itemsPerLine > 0 && currentLineItemCount == itemsPerLine) {
+			return true;
+		}
+		return currentLineWidth + width > contentWidth;
+	}
+
+	public int getContentWidth() {
+		return contentWidth;
+	}
+
+	public int getItemsPerLine() {
+		return itemsPerLine;
+	}
+
+	public int getItemCount() {
+		return itemCount;
+	}
+
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	public int getLineStart(int line) {
+		return lineStarts[line];
+	}
+
+	/**
+	 * @return position after last item in line.
+	 */
+	public int getLineEnd(int line) {
+		return line == lineCount - 1 ? itemCount : lineStarts[line + 1];
+	}
+
+	public int getLineTop(int line) {
+		return lineTops[line];
+	}
+
+	public int getLineHeight(int line) {
+		return lineHeights[line];
+	}
+
+	public int getLineBottom(int line) {
+		return lineTops[line] + lineHeights[line];
+	}
+
+	public int getTotalHeight() {
+		return lineCount == 0 ? 0 : getLineBottom(lineCount - 1);
+	}
+
+	public int getItemOffset(int position) {
+		return itemOffsets[position];
+	}
+
+	public int getItemWidth(int position) {
+		return itemWidths[position];
+	}
+
+	public int getItemHeight(int position) {
+		return itemHeights[position];
+	}
+
+	/**
+	 * @return line contains position, or -1 if position is not in table.
+	 */
+	public int getLineForPosition(int position) {
+		if (position < 0 || position >= itemCount) {
+			return -1;
+		}
+		int index = Arrays.binarySearch(lineStarts, 0, lineCount, position);
+		return index >= 0 ? index : -index - 2;
+	}
+
+	/**
+	 * @return line covers y (relative to first line top), or -1 if y is out of table.
+	 */
+	public int getLineAt(int y) {
+		if (lineCount == 0 || y < 0 || y >= getTotalHeight()) {
+			return -1;
+		}
+		int index = Arrays.binarySearch(lineTops, 0, lineCount, y);
+		return index >= 0 ? index : -index - 2;
+	}
+
+	/**
+	 * @param offset distance from line start edge.
+	 * @return last item in line which starts at or before offset, or -1 if offset is before first item.
+	 */
+	public int findItemInLine(int line, int offset) {
+		int start = lineStarts[line], end = getLineEnd(line);
+		if (offset < itemOffsets[start]) {
+			return -1;
+		}
+		int index = Arrays.binarySearch(itemOffsets, start, end, offset);
+		if (index < 0) {
+			return -index - 2;
+		}
+		// items with no width share the same offset, take the last one.
+		while (index + 1 < end && itemOffsets[index + 1] == offset) {
+			index ++;
+		}
+		return index;
+	}
+
+	private void ensureItemCapacity(int capacity) {
+		if (capacity <= itemOffsets.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, itemOffsets.length * 2);
+		itemOffsets = Arrays.copyOf(itemOffsets, newCapacity);
+		itemWidths = Arrays.copyOf(itemWidths, newCapacity);
+		itemHeights = Arrays.copyOf(itemHeights, newCapacity);
+	}
+
+	private void ensureLineCapacity(int capacity) {
+		if (capacity <= lineStarts.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, lineStarts.length * 2);
+		lineStarts = Arrays.copyOf(lineStarts, newCapacity);
+		lineTops = Arrays.copyOf(lineTops, newCapacity);
+		lineHeights = Arrays.copyOf(lineHeights, newCapacity);
+	}
+}
@@ -0,0 +1,52 @@
+package com.xiaofeng.layoutmanagers;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * Draws placeholders of {@link FlowLayoutManager} as rounded rects at item rects, so the list is not blank
+ * while a fast fling has no views attached. Added by the layout manager while placeholders are enabled.
+ */
+class PlaceholderDecoration extends RecyclerView.ItemDecoration {
+	private static final float CORNER_RADIUS_DP = 4;
+	// keeps neighbour placeholders apart, decorated rects touch each other.
+	private static final float INSET_DP = 2;
+
+	private final FlowLayoutManager layoutManager;
+	private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+	private final Rect rect = new Rect();
+	private final RectF rectF = new RectF();
+	private final float cornerRadius;
+	private final float inset;
+
+	PlaceholderDecoration(FlowLayoutManager layoutManager, float density, int color) {
+		this.layoutManager = layoutManager;
+		this.cornerRadius = CORNER_RADIUS_DP * density;
+		this.inset = INSET_DP * density;
+		paint.setColor(color);
+	}
+
+	void setColor(int color) {
+		paint.setColor(color);
+	}
+
+	@Override
+	public void onDraw(Canvas canvas, RecyclerView parent, RecyclerView.State state) {
+		int firstPosition = layoutManager.getFirstPlaceholderPosition();
+		if (firstPosition == RecyclerView.NO_POSITION || Color.alpha(paint.getColor()) == 0) {
+			return;
+		}
+		int lastPosition = layoutManager.getLastPlaceholderPosition();
+		for (int position = firstPosition; position <= lastPosition; position ++) {
+			if (!layoutManager.getPlaceholderRect(position, rect)) {
+				continue;
+			}
+			rectF.set(rect.left + inset, rect.top + inset, rect.right - inset, rect.bottom - inset);
+			canvas.drawRoundRect(rectF, cornerRadius, cornerRadius, paint);
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package com.xiaofeng.layoutmanagers;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of adapter positions, keep one and clear it between queries, e.g. for
+ * {@link FlowLayoutManager#findItemsInRect(android.graphics.Rect, PositionList)} on every drag event.
+ */
+public class PositionList {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int[] positions = new int[INITIAL_CAPACITY];
+	private int size = 0;
+
+	public void add(int position) {
+		if (size == positions.length) {
+			positions = Arrays.copyOf(positions, size * 2);
+		}
+		positions[size ++] = position;
+	}
+
+	public int get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+		}
+		return positions[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public int[] toArray() {
+		return Arrays.copyOf(positions, size);
+	}
+}
@@ -0,0 +1,97 @@
+package com.xiaofeng.layoutmanagers;
+
+import android.graphics.Paint;
+import android.graphics.Point;
+import android.widget.TextView;
+
+/**
+ * Measures single line, wrap content text chips from text paint and a padding template, the same way
+ * TextView measures a single line of boring text. Use {@link #fromTemplate(TextView, TextProvider)} with
+ * an inflated (not necessary bound) item view to copy paint, padding and minimum size.
+ *
+ * Items with icons, multiple lines or fixed/match parent size are not chips, return null from
+ * {@link TextProvider#getText(int)} for them and layout manager will measure the view.
+ */
+public class TextChipMeasurer implements ItemMeasurer {
+
+	public interface TextProvider {
+		/**
+		 * @return text of chip at adapter position, or null if the item is not a text chip.
+		 */
+		CharSequence getText(int adapterPosition);
+	}
+
+	private final Paint paint;
+	private final TextProvider textProvider;
+	private final int textHeight;
+	private int paddingLeft, paddingTop, paddingRight, paddingBottom;
+	private int insetLeft, insetTop, insetRight, insetBottom;
+	private int minWidth, minHeight;
+
+	public TextChipMeasurer(Paint paint, TextProvider textProvider) {
+		this(paint, textProvider, true, 1.0f, 0);
+	}
+
+	public TextChipMeasurer(Paint paint, TextProvider textProvider, boolean includeFontPadding, float lineSpacingMultiplier, float lineSpacingExtra) {
+		this.paint = new Paint(paint);
+		this.textProvider = textProvider;
+		Paint.FontMetricsInt fontMetrics = this.paint.getFontMetricsInt();
+		int lineHeight = includeFontPadding ? fontMetrics.bottom - fontMetrics.top : fontMetrics.descent - fontMetrics.ascent;
+		// same rounding as BoringLayout.
+		if (lineSpacingMultiplier != 1.0f || lineSpacingExtra != 0) {
+			lineHeight = (int) (lineHeight * lineSpacingMultiplier + lineSpacingExtra + 0.5f);
+		}
+		this.textHeight = lineHeight;
+	}
+
+	/**
+	 * Create measurer from an item view. Template should already have all attributes which affect size applied.
+	 */
+	public static TextChipMeasurer fromTemplate(TextView template, TextProvider textProvider) {
+		TextChipMeasurer measurer = new TextChipMeasurer(template.getPaint(), textProvider, template.getIncludeFontPadding(),
+				template.getLineSpacingMultiplier(), template.getLineSpacingExtra());
+		measurer.setPadding(template.getCompoundPaddingLeft(), template.getCompoundPaddingTop(),
+				template.getCompoundPaddingRight(), template.getCompoundPaddingBottom());
+		// TextView returns -1 for min width/height set in ems/lines, which is not supported.
+		measurer.setMinimumSize(Math.max(Math.max(template.getMinWidth(), template.getMinimumWidth()), 0),
+				Math.max(Math.max(template.getMinHeight(), template.getMinimumHeight()), 0));
+		return measurer;
+	}
+
+	public TextChipMeasurer setPadding(int left, int top, int right, int bottom) {
+		paddingLeft = left;
+		paddingTop = top;
+		paddingRight = right;
+		paddingBottom = bottom;
+		return this;
+	}
+
+	/**
+	 * Insets added by item decorations, which are part of decorated size.
+	 */
+	public TextChipMeasurer setDecorationInsets(int left, int top, int right, int bottom) {
+		insetLeft = left;
+		insetTop = top;
+		insetRight = right;
+		insetBottom = bottom;
+		return this;
+	}
+
+	public TextChipMeasurer setMinimumSize(int minWidth, int minHeight) {
+		this.minWidth = minWidth;
+		this.minHeight = minHeight;
+		return this;
+	}
+
+	@Override
+	public boolean measureItem(int adapterPosition, Point outSize) {
+		CharSequence text = textProvider.getText(adapterPosition);
+		if (text == null) {
+			return false;
+		}
+		int textWidth = (int) Math.ceil(paint.measureText(text, 0, text.length()));
+		outSize.x = Math.max(textWidth + paddingLeft + paddingRight, minWidth) + insetLeft + insetRight;
+		outSize.y = Math.max(textHeight + paddingTop + paddingBottom, minHeight) + insetTop + insetBottom;
+		return true;
+	}
+}
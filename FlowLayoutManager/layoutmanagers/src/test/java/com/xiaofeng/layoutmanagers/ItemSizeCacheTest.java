@@ -0,0 +1,80 @@
+package com.xiaofeng.layoutmanagers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ItemSizeCacheTest {
+	private static ItemSizeCache sizesOf(int... widths) {
+		ItemSizeCache cache = new ItemSizeCache();
+		for (int i = 0; i < widths.length; i ++) {
+			cache.put(i, widths[i], widths[i] * 2);
+		}
+		return cache;
+	}
+
+	@Test
+	public void put_andLookup() throws Exception {
+		ItemSizeCache cache = new ItemSizeCache();
+		assertFalse(cache.hasSize(0));
+		assertFalse(cache.hasSize(-1));
+		cache.put(3, 10, 20);
+		cache.put(3, 11, 21);
+		assertTrue(cache.hasSize(3));
+		assertFalse(cache.hasSize(2));
+		assertEquals(11, cache.getWidth(3));
+		assertEquals(21, cache.getHeight(3));
+		assertEquals(1, cache.getKnownCount());
+	}
+
+	@Test
+	public void itemsAdded_shiftSizesAfterPosition() throws Exception {
+		ItemSizeCache cache = sizesOf(10, 20, 30);
+		cache.onItemsAdded(1, 2);
+		assertEquals(10, cache.getWidth(0));
+		assertFalse(cache.hasSize(1));
+		assertFalse(cache.hasSize(2));
+		assertEquals(20, cache.getWidth(3));
+		assertEquals(60, cache.getHeight(4));
+		assertEquals(3, cache.getKnownCount());
+	}
+
+	@Test
+	public void itemsRemoved_shiftSizesAfterPosition() throws Exception {
+		ItemSizeCache cache = sizesOf(10, 20, 30, 40);
+		cache.onItemsRemoved(1, 2);
+		assertEquals(10, cache.getWidth(0));
+		assertEquals(40, cache.getWidth(1));
+		assertFalse(cache.hasSize(2));
+		assertFalse(cache.hasSize(3));
+		assertEquals(2, cache.getKnownCount());
+	}
+
+	@Test
+	public void itemsMoved_takeSizesAlong() throws Exception {
+		ItemSizeCache cache = sizesOf(10, 20, 30, 40);
+		cache.onItemsMoved(0, 3, 1);
+		assertEquals(20, cache.getWidth(0));
+		assertEquals(30, cache.getWidth(1));
+		assertEquals(40, cache.getWidth(2));
+		assertEquals(10, cache.getWidth(3));
+
+		cache.onItemsMoved(3, 1, 1);
+		assertEquals(20, cache.getWidth(0));
+		assertEquals(10, cache.getWidth(1));
+		assertEquals(30, cache.getWidth(2));
+		assertEquals(4, cache.getKnownCount());
+	}
+
+	@Test
+	public void invalidate_andClear() throws Exception {
+		ItemSizeCache cache = sizesOf(10, 20, 30);
+		cache.invalidate(1, 5);
+		assertTrue(cache.hasSize(0));
+		assertFalse(cache.hasSize(1));
+		assertEquals(1, cache.getKnownCount());
+		cache.clear();
+		assertFalse(cache.hasSize(0));
+		assertEquals(0, cache.getKnownCount());
+	}
+}
@@ -0,0 +1,125 @@
+package com.xiaofeng.layoutmanagers;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.*;
+
+/**
+ * Snapshots must match the line table they were created from, and share only chunks whose lines did not change.
+ */
+public class LayoutSnapshotTest {
+	private static final int CHUNK_SIZE = 64;
+	private static final int[] NO_POSITIONS = new int[0];
+
+	@Test
+	public void snapshot_matchesLineTable() throws Exception {
+		LineTable lineTable = singleItemLines(200);
+		LayoutSnapshot snapshot = create(null, lineTable);
+		assertMatches(lineTable, snapshot);
+		assertEquals(0, snapshot.getLineForPosition(0));
+		assertEquals(199, snapshot.getLineForPosition(199));
+		assertEquals(-1, snapshot.getLineForPosition(200));
+	}
+
+	@Test
+	public void truncateAndAppend_sharesChunksBeforeChangedLine() throws Exception {
+		LineTable lineTable = singleItemLines(200);
+		LayoutSnapshot first = create(null, lineTable);
+
+		lineTable.truncate(150);
+		for (int i = 0; i < 30; i ++) {
+			lineTable.append(100, 25);
+		}
+		LayoutSnapshot second = create(first, lineTable);
+		assertMatches(lineTable, second);
+		assertSame(chunk(first, "lineStarts", 0), chunk(second, "lineStarts", 0));
+		assertSame(chunk(first, "lineTops", 1), chunk(second, "lineTops", 1));
+		assertSame(chunk(first, "lineHeights", 1), chunk(second, "lineHeights", 1));
+		// line 149 changed height in truncate, chunk 2 holds lines 128 to 191.
+		assertNotSame(chunk(first, "lineHeights", 2), chunk(second, "lineHeights", 2));
+		assertEquals(10, first.getLineHeight(170));
+		assertEquals(25, second.getLineHeight(170));
+	}
+
+	@Test
+	public void appendOnly_sharesFullChunks() throws Exception {
+		LineTable lineTable = singleItemLines(100);
+		LayoutSnapshot first = create(null, lineTable);
+
+		for (int i = 0; i < 100; i ++) {
+			lineTable.append(100, 10);
+		}
+		LayoutSnapshot second = create(first, lineTable);
+		assertMatches(lineTable, second);
+		assertSame(chunk(first, "lineStarts", 0), chunk(second, "lineStarts", 0));
+		// partial chunk of first snapshot is rebuilt with appended lines.
+		assertNotSame(chunk(first, "lineStarts", 1), chunk(second, "lineStarts", 1));
+		assertEquals(100, first.getLineCount());
+		assertEquals(200, second.getLineCount());
+	}
+
+	@Test
+	public void growingLineHeight_rebuildsItsChunk() throws Exception {
+		LineTable lineTable = new LineTable(100, FlowLayoutManager.FlowLayoutOptions.ITEM_PER_LINE_NO_LIMIT);
+		for (int i = 0; i < 3 * CHUNK_SIZE; i ++) {
+			lineTable.append(100, 10);
+		}
+		lineTable.append(50, 10);
+		LayoutSnapshot first = create(null, lineTable);
+
+		// joins last line and makes it taller.
+		lineTable.append(50, 40);
+		LayoutSnapshot second = create(first, lineTable);
+		assertMatches(lineTable, second);
+		assertSame(chunk(first, "lineTops", 2), chunk(second, "lineTops", 2));
+		assertEquals(10, first.getLineHeight(3 * CHUNK_SIZE));
+		assertEquals(40, second.getLineHeight(3 * CHUNK_SIZE));
+	}
+
+	@Test
+	public void clear_rebuildsAllChunks() throws Exception {
+		LineTable lineTable = singleItemLines(CHUNK_SIZE * 2);
+		LayoutSnapshot first = create(null, lineTable);
+
+		lineTable.clear();
+		for (int i = 0; i < CHUNK_SIZE * 2; i ++) {
+			lineTable.append(100, 20);
+		}
+		LayoutSnapshot second = create(first, lineTable);
+		assertMatches(lineTable, second);
+		assertNotSame(chunk(first, "lineHeights", 0), chunk(second, "lineHeights", 0));
+		assertEquals(20, second.getLineHeight(0));
+	}
+
+	private static LineTable singleItemLines(int count) {
+		LineTable lineTable = new LineTable(100, FlowLayoutManager.FlowLayoutOptions.ITEM_PER_LINE_NO_LIMIT);
+		for (int i = 0; i < count; i ++) {
+			lineTable.append(100, 10);
+		}
+		return lineTable;
+	}
+
+	private static LayoutSnapshot create(LayoutSnapshot previous, LineTable lineTable) {
+		long version = previous == null ? 1 : previous.getVersion() + 1;
+		return LayoutSnapshot.create(previous, version, 100, 500, NO_POSITIONS, NO_POSITIONS, lineTable,
+				lineTable.takeFirstChangedLine(), true, 0);
+	}
+
+	private static void assertMatches(LineTable lineTable, LayoutSnapshot snapshot) {
+		assertEquals(lineTable.getLineCount(), snapshot.getLineCount());
+		assertEquals(lineTable.getItemCount(), snapshot.getLineItemCount());
+		for (int line = 0; line < lineTable.getLineCount(); line ++) {
+			assertEquals(lineTable.getLineStart(line), snapshot.getLineStart(line));
+			assertEquals(lineTable.getLineTop(line), snapshot.getLineTop(line));
+			assertEquals(lineTable.getLineHeight(line), snapshot.getLineHeight(line));
+		}
+	}
+
+	private static int[] chunk(LayoutSnapshot snapshot, String name, int chunk) throws Exception {
+		Field field = LayoutSnapshot.class.getDeclaredField(name);
+		field.setAccessible(true);
+		return ((int[][]) field.get(snapshot))[chunk];
+	}
+}
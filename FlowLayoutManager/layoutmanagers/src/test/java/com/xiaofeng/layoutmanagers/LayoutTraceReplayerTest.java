@@ -0,0 +1,151 @@
+package com.xiaofeng.layoutmanagers;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.*;
+
+public class LayoutTraceReplayerTest {
+	private static final int WIDTH = 300, HEIGHT = 400, ITEM_WIDTH = 100, ITEM_HEIGHT = 50, ITEM_COUNT = 200;
+
+	private static LayoutTraceRecorder startTrace(ByteArrayOutputStream out) {
+		return startTrace(out, false);
+	}
+
+	/**
+	 * @param mixedHeights even positions are 30px high instead of ITEM_HEIGHT, lines stay ITEM_HEIGHT high.
+	 */
+	private static LayoutTraceRecorder startTrace(ByteArrayOutputStream out, boolean mixedHeights) {
+		LayoutTraceRecorder recorder = new LayoutTraceRecorder(out);
+		recorder.recordViewport(WIDTH, HEIGHT, 0, 0, 0, 0);
+		recorder.recordOptions(LayoutTraceRecorder.ALIGNMENT_LEFT, 3, false);
+		recorder.recordItemCount(ITEM_COUNT);
+		for (int i = 0; i < ITEM_COUNT; i ++) {
+			recorder.recordItemSize(i, ITEM_WIDTH, mixedHeights && i % 2 == 0 ? 30 : ITEM_HEIGHT);
+		}
+		recorder.recordAnchor(0, 0);
+		return recorder;
+	}
+
+	/**
+	 * Children of lines starting at firstPosition, three items per line, first line top at top.
+	 */
+	private static void finishWithLines(LayoutTraceRecorder recorder, int firstPosition, int top) {
+		int childCount = 0;
+		int[] positions = new int[ITEM_COUNT];
+		int[] rects = new int[ITEM_COUNT * 4];
+		for (int position = firstPosition; top < HEIGHT; top += ITEM_HEIGHT) {
+			for (int i = 0; i < 3 && position < ITEM_COUNT; i ++, position ++, childCount ++) {
+				positions[childCount] = position;
+				rects[childCount * 4] = i * ITEM_WIDTH;
+				rects[childCount * 4 + 1] = top;
+				rects[childCount * 4 + 2] = (i + 1) * ITEM_WIDTH;
+				rects[childCount * 4 + 3] = top + ITEM_HEIGHT;
+			}
+		}
+		recorder.finish(positions, rects, childCount);
+	}
+
+	private static LayoutTraceReplayer.Report replay(ByteArrayOutputStream out) throws Exception {
+		return new LayoutTraceReplayer(true).replay(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	@Test
+	public void scrollToPosition_startsNewLineAtTarget() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		LayoutTraceRecorder recorder = startTrace(out);
+		recorder.recordScrollTo(50);
+		recorder.recordLayoutPass(50, 0);
+		recorder.recordScrollBy(20, 20);
+		finishWithLines(recorder, 50, -20);
+
+		LayoutTraceReplayer.Report report = replay(out);
+		assertEquals(0, report.anchorDivergences);
+		assertEquals(0, report.scrollDivergences);
+		assertEquals(0, report.unresolved);
+		assertEquals(0, report.layoutVerticalDrift);
+		assertEquals(0, report.layoutMismatches);
+	}
+
+	@Test
+	public void scrollUpFromMidLineAnchor_addsCutOffLineFromLineTable() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		LayoutTraceRecorder recorder = startTrace(out, true);
+		recorder.recordScrollTo(50);
+		recorder.recordLayoutPass(50, 0);
+		recorder.recordScrollBy(-60, -60);
+		// items are top aligned in lines added at top too, 48 is shorter than its line.
+		recorder.finish(new int[] {45, 46, 48, 49, 50}, new int[] {
+				0, -40, 100, 10,
+				100, -40, 200, -10,
+				0, 10, 100, 40,
+				100, 10, 200, 60,
+				0, 60, 100, 90}, 5);
+
+		LayoutTraceReplayer.Report report = replay(out);
+		assertEquals(0, report.scrollDivergences);
+		assertEquals(2, report.linesAddedAtTop);
+		assertEquals(1, report.linesRecycled);
+		assertEquals(0, report.layoutVerticalDrift);
+		assertEquals(0, report.layoutMismatches);
+	}
+
+	@Test
+	public void stackFromEndWithItemPerLine_needsOnlySizesOnScreen() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		LayoutTraceRecorder recorder = new LayoutTraceRecorder(out);
+		recorder.recordViewport(WIDTH, HEIGHT, 0, 0, 0, 0);
+		recorder.recordOptions(LayoutTraceRecorder.ALIGNMENT_LEFT, 1, true);
+		recorder.recordItemCount(1000);
+		int childCount = HEIGHT / ITEM_HEIGHT;
+		int[] positions = new int[childCount];
+		int[] rects = new int[childCount * 4];
+		for (int i = 0; i < childCount; i ++) {
+			positions[i] = 1000 - childCount + i;
+			recorder.recordItemSize(positions[i], ITEM_WIDTH, ITEM_HEIGHT);
+			rects[i * 4 + 1] = i * ITEM_HEIGHT;
+			rects[i * 4 + 2] = ITEM_WIDTH;
+			rects[i * 4 + 3] = (i + 1) * ITEM_HEIGHT;
+		}
+		recorder.recordLayoutPass(1000 - childCount + 1, 0);
+		recorder.recordLayoutPass(1000 - childCount, 0);
+		recorder.finish(positions, rects, childCount);
+
+		LayoutTraceReplayer.Report report = replay(out);
+		assertEquals(0, report.unresolved);
+		// first pass does not start where walk from last item ends.
+		assertEquals(1, report.anchorDivergences);
+	}
+
+	@Test
+	public void scrollLimits_followLayoutPass() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		LayoutTraceRecorder recorder = startTrace(out);
+		// last line at bottom edge, nothing left to scroll down to.
+		recorder.recordLayoutPass(177, 0);
+		recorder.recordScrollBy(30, 0);
+		recorder.recordScrollBy(-30, -30);
+		finishWithLines(recorder, 174, -20);
+
+		LayoutTraceReplayer.Report report = replay(out);
+		assertEquals(0, report.scrollDivergences);
+		assertEquals(0, report.unresolved);
+		assertEquals(0, report.layoutMismatches);
+	}
+
+	@Test
+	public void wrongScrollResult_isReported() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		LayoutTraceRecorder recorder = startTrace(out);
+		recorder.recordScrollBy(-10, -10);
+		recorder.recordScrollTo(30);
+		recorder.recordLayoutPass(31, 0);
+		finishWithLines(recorder, 31, 0);
+
+		LayoutTraceReplayer.Report report = replay(out);
+		assertEquals(1, report.scrollDivergences);
+		assertEquals(1, report.anchorDivergences);
+	}
+}
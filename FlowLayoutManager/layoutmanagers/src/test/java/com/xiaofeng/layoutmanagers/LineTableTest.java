@@ -0,0 +1,141 @@
+package com.xiaofeng.layoutmanagers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Line breaks must follow the same rules as {@link FlowLayoutManager} lays out views with.
+ */
+public class LineTableTest {
+	@Test
+	public void itemsOverflowingWidth_startNewLine() throws Exception {
+		LineTable lineTable = new LineTable(100, FlowLayoutManager.FlowLayoutOptions.ITEM_PER_LINE_NO_LIMIT);
+		assertTrue(lineTable.append(40, 10));
+		assertFalse(lineTable.append(40, 20));
+		assertTrue(lineTable.append(40, 15));
+		assertEquals(2, lineTable.getLineCount());
+		assertEquals(0, lineTable.getLineStart(0));
+		assertEquals(2, lineTable.getLineEnd(0));
+		assertEquals(20, lineTable.getLineHeight(0));
+		assertEquals(20, lineTable.getLineTop(1));
+		assertEquals(35, lineTable.getTotalHeight());
+		assertEquals(40, lineTable.getItemOffset(1));
+		assertEquals(0, lineTable.getItemOffset(2));
+	}
+
+	@Test
+	public void itemFillingWidthExactly_staysInLine() throws Exception {
+		LineTable lineTable = new LineTable(100, FlowLayoutManager.FlowLayoutOptions.ITEM_PER_LINE_NO_LIMIT);
+		lineTable.append(50, 10);
+		assertFalse(lineTable.append(50, 10));
+		assertTrue(lineTable.append(1, 10));
+	}
+
+	@Test
+	public void itemsPerLineLimit_startsNewLine() throws Exception {
+		LineTable lineTable = new LineTable(1000, 2);
+		lineTable.append(10, 10);
+		assertFalse(lineTable.append(10, 10));
+		assertTrue(lineTable.append(10, 10));
+		assertFalse(lineTable.append(10, 10));
+		assertTrue(lineTable.append(10, 10));
+		assertEquals(3, lineTable.getLineCount());
+		assertEquals(2, lineTable.getLineStart(1));
+		assertEquals(4, lineTable.getLineStart(2));
+	}
+
+	@Test
+	public void itemWiderThanContent_takesLineAlone() throws Exception {
+		LineTable lineTable = new LineTable(100, FlowLayoutManager.FlowLayoutOptions.ITEM_PER_LINE_NO_LIMIT);
+		lineTable.append(30, 10);
+		assertTrue(lineTable.append(150, 20));
+		assertTrue(lineTable.append(30, 10));
+		assertEquals(3, lineTable.getLineCount());
+		assertEquals(0, lineTable.getItemOffset(1));
+		assertEquals(10, lineTable.getLineTop(1));
+		assertEquals(30, lineTable.getLineTop(2));
+
+		// first item never starts a blank line, even if it does not fit.
+		LineTable wideFirst = new LineTable(100, FlowLayoutManager.FlowLayoutOptions.ITEM_PER_LINE_NO_LIMIT);
+		assertTrue(wideFirst.append(150, 20));
+		assertTrue(wideFirst.append(30, 10));
+		assertEquals(2, wideFirst.getLineCount());
+		assertEquals(0, wideFirst.getLineTop(0));
+		assertEquals(20, wideFirst.getLineTop(1));
+	}
+
+	@Test
+	public void truncate_reopensLastLine() throws Exception {
+		LineTable lineTable = new LineTable(100, FlowLayoutManager.FlowLayoutOptions.ITEM_PER_LINE_NO_LIMIT);
+		lineTable.append(30, 10);
+		lineTable.append(30, 30);
+		lineTable.append(30, 20);
+		lineTable.append(30, 10);
+		assertEquals(2, lineTable.getLineCount());
+
+		lineTable.truncate(2);
+		assertEquals(2, lineTable.getItemCount());
+		assertEquals(1, lineTable.getLineCount());
+		assertEquals(30, lineTable.getLineHeight(0));
+
+		lineTable.truncate(1);
+		assertEquals(10, lineTable.getLineHeight(0));
+		// line is open again, next item continues it.
+		assertFalse(lineTable.append(60, 5));
+		assertEquals(30, lineTable.getItemOffset(1));
+		assertTrue(lineTable.append(20, 5));
+		assertEquals(10, lineTable.getLineTop(1));
+	}
+
+	@Test
+	public void truncate_atLineStart_keepsLineBreak() throws Exception {
+		LineTable lineTable = new LineTable(100, 2);
+		lineTable.append(10, 10);
+		lineTable.append(10, 10);
+		lineTable.append(10, 10);
+		lineTable.truncate(2);
+		assertEquals(1, lineTable.getLineCount());
+		assertTrue(lineTable.append(10, 10));
+
+		lineTable.truncate(0);
+		assertEquals(0, lineTable.getItemCount());
+		assertEquals(0, lineTable.getLineCount());
+		assertEquals(0, lineTable.getTotalHeight());
+	}
+
+	@Test
+	public void lookups() throws Exception {
+		LineTable lineTable = new LineTable(100, FlowLayoutManager.FlowLayoutOptions.ITEM_PER_LINE_NO_LIMIT);
+		lineTable.append(40, 10);
+		lineTable.append(0, 10);
+		lineTable.append(40, 10);
+		lineTable.append(40, 20);
+		assertEquals(0, lineTable.getLineForPosition(2));
+		assertEquals(1, lineTable.getLineForPosition(3));
+		assertEquals(-1, lineTable.getLineForPosition(4));
+		assertEquals(0, lineTable.getLineAt(9));
+		assertEquals(1, lineTable.getLineAt(10));
+		assertEquals(-1, lineTable.getLineAt(30));
+		assertEquals(-1, lineTable.getLineAt(-1));
+		// item without width shares offset with next one, last one wins.
+		assertEquals(2, lineTable.findItemInLine(0, 40));
+		assertEquals(0, lineTable.findItemInLine(0, 39));
+		assertEquals(2, lineTable.findItemInLine(0, 99));
+	}
+
+	@Test
+	public void copy_isNotAffectedByLaterChanges() throws Exception {
+		LineTable lineTable = new LineTable(100, FlowLayoutManager.FlowLayoutOptions.ITEM_PER_LINE_NO_LIMIT);
+		lineTable.append(60, 10);
+		lineTable.append(60, 10);
+		LineTable copy = lineTable.copy();
+		lineTable.truncate(1);
+		lineTable.append(20, 30);
+		assertEquals(2, copy.getItemCount());
+		assertEquals(2, copy.getLineCount());
+		assertEquals(10, copy.getLineHeight(0));
+		assertEquals(20, copy.getTotalHeight());
+		assertTrue(copy.matches(100, FlowLayoutManager.FlowLayoutOptions.ITEM_PER_LINE_NO_LIMIT));
+	}
+}
@@ -0,0 +1,41 @@
+package com.xiaofeng.layoutmanagers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PositionListTest {
+	@Test
+	public void add_growsPastInitialCapacity() throws Exception {
+		PositionList positions = new PositionList();
+		for (int i = 0; i < 100; i ++) {
+			positions.add(i * 2);
+		}
+		assertEquals(100, positions.size());
+		assertEquals(0, positions.get(0));
+		assertEquals(198, positions.get(99));
+		assertEquals(100, positions.toArray().length);
+	}
+
+	@Test
+	public void clear_keepsListReusable() throws Exception {
+		PositionList positions = new PositionList();
+		positions.add(5);
+		positions.clear();
+		assertTrue(positions.isEmpty());
+		positions.add(7);
+		assertEquals(1, positions.size());
+		assertEquals(7, positions.get(0));
+	}
+
+	@Test
+	public void get_beyondSize_throws() throws Exception {
+		PositionList positions = new PositionList();
+		positions.add(1);
+		try {
+			positions.get(1);
+			fail("position beyond size");
+		} catch (IndexOutOfBoundsException expected) {
+		}
+	}
+}